@@ -0,0 +1,118 @@
+package apryraz.tworld.benchmarks;
+
+import java.util.List;
+
+import apryraz.tworld.*;
+import apryraz.tworld.ScenarioGenerator.PirateLayout;
+import apryraz.tworld.ScenarioGenerator.Walk;
+
+/**
+*  Scenario of the Treasure World generated from a seed, so every benchmark
+*  run uses the same world, pirates and sequence of steps. The scenarios
+*  are those of ScenarioGenerator, so a benchmark can be checked against
+*  the regression scenarios generated with the same seed and parameters.
+**/
+public class BenchmarkScenario {
+
+  /**
+  *  Dimension of the world and position of the Treasure
+  **/
+  public final int dim, treasureX, treasureY;
+  /**
+  *  Sequence of steps of the agent and positions of the pirates
+  **/
+  public final List<Position> steps, pirates;
+
+  BenchmarkScenario( SimulationScenario scenario ) {
+    dim = scenario.getDim();
+    treasureX = scenario.getTreasureX();
+    treasureY = scenario.getTreasureY();
+    steps = scenario.getSteps();
+    pirates = scenario.getPirates();
+  }
+
+  /**
+  *  Generate a scenario
+  *
+  *  @param seed          seed of the random generator
+  *  @param dim           dimension of the world
+  *  @param pirateDensity fraction of the positions of the world with a
+  *                       pirate, placed uniformly
+  *  @param walk          shape of the sequence of steps, with stride 1:
+  *                       "random", "spiral" or "boustrophedon"
+  *  @param numSteps      number of steps of the sequence
+  *  @return the scenario generated
+  **/
+  public static BenchmarkScenario generate( long seed, int dim, double pirateDensity,
+                                            String walk, int numSteps ) {
+    ScenarioGenerator generator = new ScenarioGenerator(dim, seed);
+    generator.setPirates(pirateDensity, PirateLayout.UNIFORM);
+    generator.setWalk(Walk.valueOf(walk.toUpperCase()), 1);
+    return new BenchmarkScenario(generator.generate("benchmark", numSteps));
+  }
+
+  /**
+  *  Create an inference engine
+  *
+  *  @param mode "sat", "model" (SAT with model pruning), "single" (SAT with
+  *              a single set of variables), "parallel" (SAT with one replica
+  *              per processor) or "geometric"
+  *  @param dim  dimension of the world
+  *  @return the engine created
+  **/
+  public static InferenceEngine newEngine( String mode, int dim ) {
+    switch (mode) {
+      case "sat":
+        return new SatInferenceEngine(dim);
+      case "model":
+        SatInferenceEngine engine = new SatInferenceEngine(dim);
+        engine.setModelPruning(true);
+        return engine;
+      case "single":
+        return new SatInferenceEngine(dim, true);
+      case "parallel":
+        return new ParallelSatInferenceEngine(dim, Runtime.getRuntime().availableProcessors());
+      case "geometric":
+        return new GeometricInferenceEngine(dim);
+      default:
+        throw new IllegalArgumentException("Unknown engine: " + mode);
+    }
+  }
+
+  /**
+  *  Create the environment of the scenario, with no output
+  *
+  *  @return the environment created
+  **/
+  public TreasureWorldEnv newEnvironment() {
+    TreasureWorldEnv env = new TreasureWorldEnv(dim, treasureX, treasureY);
+    env.setListener(NullListener.INSTANCE);
+    env.setPiratesLocations(pirates);
+    return env;
+  }
+
+  /**
+  *  Create an agent for the scenario, with no output, ready to run the steps
+  *
+  *  @param engineMode the inference engine to use (see newEngine)
+  *  @return the agent created
+  **/
+  public TreasureFinder newAgent( String engineMode ) {
+    TreasureFinder agent = new TreasureFinder(dim, newEngine(engineMode, dim), NullListener.INSTANCE);
+    agent.setEnvironment(newEnvironment());
+    agent.setListOfSteps(steps);
+    return agent;
+  }
+
+  /**
+  *  Release the threads used by the engine of an agent, if any
+  *
+  *  @param agent the agent, or null
+  **/
+  public static void release( TreasureFinder agent ) {
+    if (agent != null) {
+      agent.close();
+    }
+  }
+
+}
@@ -0,0 +1,69 @@
+package apryraz.tworld.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import apryraz.tworld.*;
+
+/**
+*  Benchmark of TreasureWorldEnv.acceptMessage, answering the moveto,
+*  detectsat and treasureup messages of the steps of a scenario, both with
+*  the string messages and with the typed ones.
+**/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnvironmentBenchmark {
+
+  @Param({"16", "256", "2048"})
+  public int dim;
+
+  @Param({"0.0", "0.001", "0.01"})
+  public double pirateDensity;
+
+  @Param({"42"})
+  public long seed;
+
+  TreasureWorldEnv env;
+  AMessage[] messages;
+  TMessage[] typedMessages;
+  TMessage answer = new TMessage();
+  int next;
+
+  @Setup(Level.Trial)
+  public void createEnvironment() {
+    BenchmarkScenario scenario = BenchmarkScenario.generate(seed, dim, pirateDensity, "random", 1024);
+    env = scenario.newEnvironment();
+    messages = new AMessage[3 * scenario.steps.size()];
+    typedMessages = new TMessage[messages.length];
+    int i = 0;
+    for (Position step : scenario.steps) {
+      String x = Integer.toString(step.x), y = Integer.toString(step.y);
+      messages[i++] = new AMessage("moveto", x, y, "");
+      messages[i++] = new AMessage("detectsat", x, y, "");
+      messages[i++] = new AMessage("treasureup", x, y, "");
+    }
+    for (i = 0; i < messages.length; i++) {
+      typedMessages[i] = TMessage.fromAMessage(messages[i], new TMessage());
+    }
+  }
+
+  @Benchmark
+  public AMessage acceptMessage() {
+    AMessage msg = messages[next];
+    next = (next + 1) % messages.length;
+    return env.acceptMessage(msg);
+  }
+
+  @Benchmark
+  public TMessage acceptTypedMessage() {
+    TMessage msg = typedMessages[next];
+    next = (next + 1) % typedMessages.length;
+    return env.acceptMessage(msg, answer);
+  }
+
+}
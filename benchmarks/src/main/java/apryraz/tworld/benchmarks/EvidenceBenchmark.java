@@ -0,0 +1,85 @@
+package apryraz.tworld.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import apryraz.tworld.*;
+
+/**
+*  Benchmarks of the evidence paths of the engines: the metal detector
+*  readings (getSensorClauses0..3 in the SAT engine) and the pirate answers.
+*
+*  The engine is created once for each trial, as building it (buildGamma)
+*  takes much longer than an evidence call, and every invocation adds the
+*  evidence at a batch of positions generated from a seed. The evidence of
+*  all the invocations is kept, so the numbers are those of an agent that
+*  has already received much evidence: the SAT engines skip the positions
+*  already denied. The pirate answers only update the row bounds of the
+*  engines; the rows left out are removed in performInferenceQuestions, in
+*  StepBenchmark.
+**/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+// The SAT formula of dimension 2048 needs a few GB
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class EvidenceBenchmark {
+
+  /**
+  *  Number of evidence calls of each invocation
+  **/
+  static final int BATCH = 64;
+
+  @Param({"4", "64", "512", "2048"})
+  public int dim;
+
+  @Param({"sat", "single", "geometric"})
+  public String engine;
+
+  @Param({"0", "1", "2", "3"})
+  public int reading;
+
+  @Param({"42"})
+  public long seed;
+
+  InferenceEngine inference;
+  int[] xs = new int[BATCH], ys = new int[BATCH];
+
+  @Setup(Level.Trial)
+  public void createEngine() {
+    inference = BenchmarkScenario.newEngine(engine, dim);
+    Random random = new Random(seed);
+    for (int i = 0; i < BATCH; i++) {
+      xs[i] = 1 + random.nextInt(dim);
+      ys[i] = 1 + random.nextInt(dim);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void releaseEngine() {
+    inference.close();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public InferenceEngine detectorEvidence() throws Exception {
+    for (int i = 0; i < BATCH; i++) {
+      inference.addDetectorEvidence(xs[i], ys[i], reading);
+    }
+    return inference;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public InferenceEngine pirateEvidence() throws Exception {
+    for (int i = 0; i < BATCH; i++) {
+      inference.addPirateEvidence(ys[i], (reading + i) % 2 == 0);
+    }
+    return inference;
+  }
+
+}
@@ -0,0 +1,32 @@
+package apryraz.tworld.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import apryraz.tworld.*;
+
+/**
+*  Benchmark of the construction of the initial formula Gamma of the SAT
+*  engine (SatInferenceEngine.buildGamma, called by its constructor)
+**/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GammaBenchmark {
+
+  @Param({"4", "64", "512", "2048"})
+  public int dim;
+
+  @Param({"false", "true"})
+  public boolean singleSet;
+
+  @Benchmark
+  public SatInferenceEngine buildGamma() {
+    return new SatInferenceEngine(dim, singleSet);
+  }
+
+}
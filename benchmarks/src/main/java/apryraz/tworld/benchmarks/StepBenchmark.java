@@ -0,0 +1,129 @@
+package apryraz.tworld.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import apryraz.tworld.*;
+
+/**
+*  Benchmarks of the step loop of the agent: a whole sequence of steps,
+*  the last step of the sequence, and only the inference questions of the
+*  last step.
+*
+*  The SAT engines at dimension 2048 take a long time to set up for each
+*  invocation, so a quick run can select the dimensions with -p dim=...
+**/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+// The SAT formula of dimension 2048 needs a few GB
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class StepBenchmark {
+
+  @Param({"4", "16", "64", "256", "2048"})
+  public int dim;
+
+  @Param({"sat", "model", "single", "parallel", "geometric"})
+  public String engine;
+
+  @Param({"0.01"})
+  public double pirateDensity;
+
+  @Param({"random", "spiral", "boustrophedon"})
+  public String walk;
+
+  @Param({"16"})
+  public int numSteps;
+
+  @Param({"42"})
+  public long seed;
+
+  BenchmarkScenario scenario;
+  TreasureFinder agent;
+
+  @Setup(Level.Trial)
+  public void createScenario() {
+    scenario = BenchmarkScenario.generate(seed, dim, pirateDensity, walk, numSteps);
+  }
+
+  @TearDown(Level.Invocation)
+  public void releaseAgent() {
+    BenchmarkScenario.release(agent);
+  }
+
+  /**
+  *  State with a new agent, before the first step
+  **/
+  @State(Scope.Thread)
+  public static class NewAgent {
+    TreasureFinder agent;
+
+    @Setup(Level.Invocation)
+    public void createAgent( StepBenchmark bench ) {
+      agent = bench.scenario.newAgent(bench.engine);
+      bench.agent = agent;
+    }
+  }
+
+  /**
+  *  State with an agent that has performed all the steps but the last one
+  **/
+  @State(Scope.Thread)
+  public static class BeforeLastStep {
+    TreasureFinder agent;
+
+    @Setup(Level.Invocation)
+    public void createAgent( StepBenchmark bench ) throws Exception {
+      agent = bench.scenario.newAgent(bench.engine);
+      bench.agent = agent;
+      for (int i = 1; i < bench.numSteps; i++) {
+        agent.runNextStep();
+      }
+    }
+  }
+
+  /**
+  *  State with an agent that has performed the last step but for the
+  *  inference questions: it has moved and added the detector evidence
+  **/
+  @State(Scope.Thread)
+  public static class BeforeLastInference {
+    TreasureFinder agent;
+
+    @Setup(Level.Invocation)
+    public void createAgent( StepBenchmark bench ) throws Exception {
+      agent = bench.scenario.newAgent(bench.engine);
+      bench.agent = agent;
+      for (int i = 1; i < bench.numSteps; i++) {
+        agent.runNextStep();
+      }
+      agent.addLastFutureClausesToPastClauses();
+      agent.processMoveAnswer(agent.moveToNext());
+      agent.processDetectorSensorAnswer(agent.DetectsAt());
+    }
+  }
+
+  @Benchmark
+  public TFState runStepsSequence( NewAgent state ) throws Exception {
+    for (int i = 0; i < numSteps; i++) {
+      state.agent.runNextStep();
+    }
+    return state.agent.getState();
+  }
+
+  @Benchmark
+  public TFState runNextStep( BeforeLastStep state ) throws Exception {
+    state.agent.runNextStep();
+    return state.agent.getState();
+  }
+
+  @Benchmark
+  public TFState performInferenceQuestions( BeforeLastInference state ) throws Exception {
+    state.agent.performInferenceQuestions();
+    return state.agent.getState();
+  }
+
+}
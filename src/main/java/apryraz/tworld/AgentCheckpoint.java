@@ -0,0 +1,156 @@
+package apryraz.tworld;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+
+import org.sat4j.specs.*;
+
+
+/**
+*  Checkpoint of the knowledge of a TreasureFinder agent, to continue later
+*  from the same point without performing again all the steps.
+*
+*  The knowledge of the agent is the set of positions still possible, as
+*  every piece of evidence only discards positions, so the checkpoint keeps
+*  the state of the agent (one bit for each position) and not the clauses of
+*  the formula. All the numbers are big endian:
+*
+*    magic "TWCK", version, dimension, index of the next step, agent x,
+*    agent y, step when the Treasure was located (0 if not), Treasure x,
+*    Treasure y (int each), and the words of the TFState (long each)
+*
+*  The sequence of steps is not saved: the agent must load the same steps
+*  (or use an exploration policy) before it is restored, as loading them
+*  starts again the sequence.
+**/
+public class AgentCheckpoint {
+
+  static final int MAGIC = 0x5457434b;
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 36;
+
+  private AgentCheckpoint() {
+  }
+
+ /**
+ *  Returns the size of the checkpoint of an agent
+ *
+ *  @param agent the agent
+ *  @return the number of bytes of its checkpoint
+ **/
+  public static int size( TreasureFinder agent ) {
+    return HEADER_SIZE + 8 * agent.tfstate.words.length;
+  }
+
+ /**
+ *  Write the checkpoint of an agent, between two steps
+ *
+ *  @param agent the agent
+ *  @param buffer buffer with at least size(agent) bytes remaining
+ **/
+  public static void save( TreasureFinder agent, ByteBuffer buffer ) {
+    Position treasure = agent.treasurePosition;
+    buffer.putInt(MAGIC).putInt(VERSION).putInt(agent.WorldDim).putInt(agent.idNextStep);
+    buffer.putInt(agent.agentX).putInt(agent.agentY).putInt(agent.locatedAtStep);
+    buffer.putInt(treasure == null ? 0 : treasure.x).putInt(treasure == null ? 0 : treasure.y);
+    buffer.asLongBuffer().put(agent.tfstate.words);
+    buffer.position(buffer.position() + 8 * agent.tfstate.words.length);
+  }
+
+ /**
+ *  Write the checkpoint of an agent to a file
+ *
+ *  @param agent the agent
+ *  @param fileName the name of the file
+ *  @throws IOException if the file can not be written
+ **/
+  public static void save( TreasureFinder agent, String fileName ) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(size(agent));
+    save(agent, buffer);
+    buffer.flip();
+    RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+    try {
+      file.setLength(0);
+      FileChannel channel = file.getChannel();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    } finally {
+      file.close();
+    }
+  }
+
+ /**
+ *  Restore the knowledge of an agent from a checkpoint. The agent must
+ *  have been created for the same dimension and not have performed any
+ *  step, and the positions still possible are given to its inference engine.
+ *  The agent is only changed once its engine accepts them.
+ *
+ *  @param agent the agent
+ *  @param buffer buffer positioned at the start of the checkpoint
+ *  @throws IOException if the buffer does not have a checkpoint of an
+ *          agent of the same dimension
+ *  @throws ContradictionException if inserting contradictory clauses in formula.
+ **/
+  public static void restore( TreasureFinder agent, ByteBuffer buffer ) throws
+          IOException, ContradictionException {
+    if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+      throw new IOException("Not an agent checkpoint");
+    }
+    int dim = buffer.getInt();
+    if (dim != agent.WorldDim) {
+      throw new IOException("Checkpoint of a world of dimension " + dim
+                            + ", but the agent has dimension " + agent.WorldDim);
+    }
+    int idNextStep = buffer.getInt();
+    int agentX = buffer.getInt(), agentY = buffer.getInt(), locatedAtStep = buffer.getInt();
+    int treasureX = buffer.getInt(), treasureY = buffer.getInt();
+    TFState state = new TFState(dim);
+    long[] words = state.words;
+    if (buffer.remaining() < 8 * words.length) {
+      throw new IOException("Truncated agent checkpoint");
+    }
+    buffer.asLongBuffer().get(words);
+    buffer.position(buffer.position() + 8 * words.length);
+
+    // Possible positions of the state, by lineal index of the engine
+    BitSet possible = new BitSet(agent.WorldLinealDim);
+    for (int c = state.nextCandidate(0); c >= 0; c = state.nextCandidate(c + 1)) {
+      int row = c / dim, column = c % dim;
+      possible.set(column * dim + row);
+    }
+    agent.engine.restoreCandidates(possible);
+
+    System.arraycopy(words, 0, agent.tfstate.words, 0, words.length);
+    agent.idNextStep = idNextStep;
+    agent.agentX = agentX;
+    agent.agentY = agentY;
+    agent.numPossible = possible.cardinality();
+    agent.locatedAtStep = locatedAtStep;
+    agent.treasurePosition = locatedAtStep > 0 ? new Position(treasureX, treasureY) : null;
+  }
+
+ /**
+ *  Restore the knowledge of an agent from a checkpoint file
+ *
+ *  @param agent the agent
+ *  @param fileName the name of the file
+ *  @throws IOException if the file can not be read, or it does not have a
+ *          checkpoint of an agent of the same dimension
+ *  @throws ContradictionException if inserting contradictory clauses in formula.
+ **/
+  public static void restore( TreasureFinder agent, String fileName ) throws
+          IOException, ContradictionException {
+    RandomAccessFile file = new RandomAccessFile(fileName, "r");
+    try {
+      FileChannel channel = file.getChannel();
+      restore(agent, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    } finally {
+      file.close();
+    }
+  }
+
+}
@@ -0,0 +1,77 @@
+package apryraz.tworld;
+
+/**
+*  Interface for the counters and timers of the TreasureFinder agent and its
+*  inference engine. The agent and the engines only measure and report when
+*  isEnabled() is true, so with NullMetrics no time is read and nothing is
+*  counted. MetricsRegistry keeps all the values reported.
+**/
+public interface AgentMetrics {
+
+  /**
+  *  Phases of a step of the agent
+  **/
+  enum Phase {
+    /** Request to the environment and processing of the movement **/
+    MOVE,
+    /** Evidence of the metal detector **/
+    SENSOR,
+    /** Evidence of the pirate answer **/
+    PIRATE,
+    /**
+    *  Inference of the positions where the Treasure can NOT be, including
+    *  adding the conclusions of the previous step to the formula at the
+    *  start of the step
+    **/
+    INFERENCE
+  }
+
+  /**
+  *  Check whether the values must be measured and reported
+  *
+  *  @return false if all the values reported are ignored
+  **/
+  boolean isEnabled();
+
+  /**
+  *  Time spent in a phase of some steps. The phase of several steps can be
+  *  measured at once, as the MOVE phase of a batch of steps requested to
+  *  the environment with a single request.
+  *
+  *  @param phase the phase
+  *  @param nanos time spent, in nanoseconds
+  *  @param steps number of steps measured
+  **/
+  void phaseTime( Phase phase, long nanos, int steps );
+
+  /**
+  *  A call to isSatisfiable of a SAT solver
+  *
+  *  @param satisfiable the answer of the solver
+  **/
+  void satCall( boolean satisfiable );
+
+  /**
+  *  Clauses added to the formula of a SAT solver
+  *
+  *  @param count number of clauses added
+  **/
+  void clausesAdded( int count );
+
+  /**
+  *  Size of the formula of the SAT solver after a step
+  *
+  *  @param numVariables number of variables of the solver
+  *  @param numClauses number of clauses (constraints) of the solver
+  **/
+  void solverSize( int numVariables, int numClauses );
+
+  /**
+  *  The agent finished a step
+  *
+  *  @param step number of steps performed
+  *  @param candidates number of positions where the Treasure can still be
+  **/
+  void stepFinished( int step, int candidates );
+
+}
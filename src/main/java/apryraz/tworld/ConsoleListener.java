@@ -0,0 +1,79 @@
+package apryraz.tworld;
+
+/**
+*  Listener that shows every event on screen, with the same messages
+*  printed by the agent and the environment before listeners existed.
+*  It is the listener used by default.
+**/
+public class ConsoleListener implements TreasureWorldListener {
+
+  /**
+  *  Shared instance, used by default by agents and environments
+  **/
+  public static final ConsoleListener INSTANCE = new ConsoleListener();
+
+  @Override
+  public void agentStarted( TFState state ) {
+    System.out.println("STARTING TREASURE FINDER AGENT...");
+    state.printState();
+  }
+
+  @Override
+  public void fileOpened( String fileName, boolean pirates ) {
+    System.out.println(pirates ? "PIRATES FILE OPENED ..." : "STEPS FILE OPENED ...");
+  }
+
+  @Override
+  public void moving( int x, int y ) {
+    System.out.println("FINDER => moving to : (" + x + "," + y + ")");
+  }
+
+  @Override
+  public void moved( int x, int y, int pirate ) {
+    System.out.println("FINDER => moved to : (" + x + "," + y + ")" + " Pirate found : "+pirate );
+  }
+
+  @Override
+  public void noMoreSteps() {
+    System.out.println("NO MORE steps to perform at agent!");
+  }
+
+  @Override
+  public void detecting( int x, int y ) {
+    System.out.println("FINDER => detecting at : (" + x + "," + y + ")");
+  }
+
+  @Override
+  public void detectorReading( int reading ) {
+    System.out.println("Metal sensor returned: " + reading);
+    System.out.println("Inserting evidence clause");
+  }
+
+  @Override
+  public void invalidDetectorReading( String answer ) {
+    System.out.println("Metal sensor returned: " + answer);
+    System.out.println("Inserting evidence clause");
+    System.out.println("FINDER => Error with metal sensor reading");
+  }
+
+  @Override
+  public void askingPirate( int x, int y ) {
+    System.out.println("FINDER => checking treasure up of : (" + x + "," + y + ")");
+  }
+
+  @Override
+  public void treasureLocated( int x, int y ) {
+    System.out.println("Treasure: -> ("+x+","+y+")");
+  }
+
+  @Override
+  public void stepFinished( int step, TFState state ) {
+    state.printState();      // Print the resulting knowledge matrix
+  }
+
+  @Override
+  public void messageReceived( TMessage msg ) {
+    msg.showMessage();
+  }
+
+}
@@ -0,0 +1,142 @@
+package apryraz.tworld;
+
+import java.util.BitSet;
+
+
+/**
+*  Movement policy for the TreasureFinder agent, that chooses the next
+*  position instead of following a fixed sequence of steps. Among the
+*  positions reachable from the agent position (at most maxMove positions
+*  away in each coordinate), it chooses the one where the metal detector
+*  reading is expected to discard more of the positions still possible.
+*
+*  With every possible position equally likely, a reading at (x,y) splits
+*  the N possible positions in four sets, one for each reading: (x,y), the
+*  rest of the 3x3 square, the rest of the 5x5 square, and the rest of the
+*  world. If the sets have n1, n2, n3 and n0 positions, the expected number
+*  of positions after the reading is (n0^2 + n1^2 + n2^2 + n3^2) / N, so the
+*  policy chooses the position with the lowest sum of squares. Only the 25
+*  positions around each move are checked, so the cost of a decision does
+*  not depend on the size of the world.
+*
+*  The answer of a pirate is not known before moving, and a pirate that was
+*  already asked gives the same answer again, so pirates are not scored.
+*  When no reachable position gives any information, the agent moves towards
+*  the first position still possible.
+**/
+public class ExplorationPolicy {
+
+  int WorldDim;
+  int maxMove;
+
+
+ /**
+ *  Class constructor, for an agent that moves to the 8 neighbour positions
+ *
+ *  @param WDim the dimension of the Treasure World
+ **/
+  public ExplorationPolicy( int WDim ) {
+    this(WDim, 1);
+  }
+
+ /**
+ *  Class constructor
+ *
+ *  @param WDim the dimension of the Treasure World
+ *  @param maxMove maximum distance of a movement in each coordinate
+ **/
+  public ExplorationPolicy( int WDim, int maxMove ) {
+    if (maxMove < 1) {
+      throw new IllegalArgumentException("Movements must be of at least one position: " + maxMove);
+    }
+    WorldDim = WDim;
+    this.maxMove = maxMove;
+  }
+
+ /**
+ *  Choose the next position of the agent. Before the first movement, when
+ *  the agent is not in the world, it moves to the center of the world.
+ *
+ *  @param x  x coordinate of the agent position, 0 if not in the world
+ *  @param y  y coordinate of the agent position, 0 if not in the world
+ *  @param candidates positions still possible, by lineal index
+ *  @param numCandidates number of positions still possible
+ *  @return the position to move to
+ **/
+  public Position chooseNext( int x, int y, BitSet candidates, int numCandidates ) {
+    if (x < 1 || x > WorldDim || y < 1 || y > WorldDim) {
+      return new Position((WorldDim + 1) / 2, (WorldDim + 1) / 2);
+    }
+    long best = (long) numCandidates * numCandidates;
+    int bestX = 0, bestY = 0;
+    for (int i = Math.max(1, x - maxMove); i <= Math.min(WorldDim, x + maxMove); i++) {
+      for (int j = Math.max(1, y - maxMove); j <= Math.min(WorldDim, y + maxMove); j++) {
+        if (i == x && j == y) {
+          continue;
+        }
+        long score = sumOfSquares(i, j, candidates, numCandidates);
+        if (score < best) {
+          best = score;
+          bestX = i;
+          bestY = j;
+        }
+      }
+    }
+    if (bestX > 0) {
+      return new Position(bestX, bestY);
+    }
+
+    // No information around: get closer to a position still possible
+    int target = candidates.nextSetBit(0);
+    if (target == (x - 1) * WorldDim + (y - 1)) {
+      target = candidates.nextSetBit(target + 1);
+    }
+    if (target < 0) {
+      return new Position(x, y);
+    }
+    int tx = target / WorldDim + 1, ty = target % WorldDim + 1;
+    return new Position(x + clamp(tx - x), y + clamp(ty - y));
+  }
+
+ /**
+ *  Returns the sum of the squares of the number of positions still possible
+ *  after each of the four readings at (x,y). Dividing it by the number of
+ *  positions gives the expected number of positions after the reading.
+ *
+ *  @param x  x coordinate of the detector
+ *  @param y  y coordinate of the detector
+ *  @param candidates positions still possible, by lineal index
+ *  @param numCandidates number of positions still possible
+ *  @return the sum of squares
+ **/
+  public long sumOfSquares( int x, int y, BitSet candidates, int numCandidates ) {
+    long n1 = countSquare(x, y, 0, candidates);
+    long n3x3 = countSquare(x, y, 1, candidates);
+    long n5x5 = countSquare(x, y, 2, candidates);
+    long n2 = n3x3 - n1, n3 = n5x5 - n3x3, n0 = numCandidates - n5x5;
+    return n0 * n0 + n1 * n1 + n2 * n2 + n3 * n3;
+  }
+
+ /**
+ *  Count the positions still possible in the square of radius r centered
+ *  at (x,y), clipped to the limits of the world
+ **/
+  private int countSquare( int x, int y, int r, BitSet candidates ) {
+    int count = 0;
+    int fromY = Math.max(1, y - r), toY = Math.min(WorldDim, y + r);
+    for (int i = Math.max(1, x - r); i <= Math.min(WorldDim, x + r); i++) {
+      int column = (i - 1) * WorldDim;
+      for (int j = fromY; j <= toY; j++) {
+        if (candidates.get(column + j - 1)) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  private int clamp( int delta ) {
+    return Math.max(-maxMove, Math.min(maxMove, delta));
+  }
+
+}
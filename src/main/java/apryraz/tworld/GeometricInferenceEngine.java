@@ -0,0 +1,191 @@
+package apryraz.tworld;
+
+import java.util.BitSet;
+
+
+/**
+*  Inference engine that does not use a SAT solver. Every piece of evidence
+*  of the Treasure World limits the Treasure to a square, a ring around the
+*  agent or a set of rows, so the set of possible positions is kept exactly
+*  as a bitset and it is intersected with the shape given by each evidence.
+*
+*  The positions of a column x are consecutive in the bitset, so each shape
+*  is applied by clearing at most a few ranges of bits for each column. The
+*  rows given by the pirates are kept as bounds, and applied only once in
+*  each step (see RowBounds).
+**/
+public class GeometricInferenceEngine implements InferenceEngine {
+
+/**
+*  Set of positions where the Treasure can still be, indexed by the lineal
+*  index of the position: (x-1) * WorldDim + (y-1)
+**/
+    BitSet candidates;
+/**
+*  Set of positions that were still possible in the last call to
+*  performInferenceQuestions, used to mark only the new conclusions
+**/
+    BitSet reported;
+/**
+*  Rows where the Treasure can be, given by the pirates
+**/
+    RowBounds rows;
+/**
+*  Dimension of the world and total size of the world (Dim^2)
+**/
+    int WorldDim, WorldLinealDim;
+
+
+   /**
+     The class constructor creates the initial knowledge, where every
+     position of the world is still possible.
+
+     @param WDim the dimension of the Treasure World
+   **/
+    public GeometricInferenceEngine(int WDim)
+    {
+        WorldDim = WDim;
+        WorldLinealDim = WorldDim * WorldDim;
+        candidates = new BitSet(WorldLinealDim);
+        candidates.set(0, WorldLinealDim);
+        reported = (BitSet) candidates.clone();
+        rows = new RowBounds(WorldDim);
+    }
+
+    @Override
+    public BitSet getCandidates() {
+        return candidates;
+    }
+
+    @Override
+    public void restoreCandidates( BitSet possible ) {
+        candidates.clear();
+        candidates.or(possible);
+        reported.clear();
+        reported.or(candidates);
+        rows.reset();
+    }
+
+    @Override
+    public void setMetrics( AgentMetrics metrics ) {
+        // No solver, so nothing to report
+    }
+
+    @Override
+    public void startStep() {
+        // Knowledge is kept in the candidates set, nothing to carry forward
+    }
+
+    @Override
+    public void close() {
+        // No threads nor solver to release
+    }
+
+    /**
+    * Intersect the possible positions with the shape given by the metal
+    * detector reading at (x,y)
+    *
+    * @param x        x coordinate of the agent position
+    * @param y        y coordinate of the agent position
+    * @param reading  metal sensor can give four different readings: 0, 1, 2 or 3.
+    **/
+    @Override
+    public void addDetectorEvidence(int x, int y, int reading) {
+      switch (reading) {
+
+        case 0:
+          // Treasure is not in the 5x5 square around the agent
+          clearSquare(x, y, 2);
+          break;
+
+        case 1:
+          // Treasure is at the agent position
+          keepSquare(x, y, 0);
+          break;
+
+        case 2:
+          // Treasure is in the 3x3 square around the agent, but not at its position
+          keepSquare(x, y, 1);
+          clearSquare(x, y, 0);
+          break;
+
+        case 3:
+          // Treasure is in the 5x5 square around the agent, but not in the 3x3 one
+          keepSquare(x, y, 2);
+          clearSquare(x, y, 1);
+          break;
+
+        default:
+          break;
+      }
+    }
+
+    /**
+    * Limit the rows of the possible positions with the answer of a pirate
+    * at row y. The rows are removed in the next inference.
+    *
+    * @param y     y coordinate of the agent position
+    * @param isUp  true if the pirate said the Treasure is up of the agent
+    **/
+    @Override
+    public void addPirateEvidence(int y, boolean isUp) {
+        rows.addPirateAnswer(y, isUp);
+    }
+
+    /**
+    * Mark with "X" the positions that are no longer possible since the
+    * last call to this function. The rows left out by the pirates are
+    * removed and marked as whole rows first.
+    *
+    * @param tfstate the state of knowledge of the agent
+    * @return the number of positions where the Treasure can still be
+    **/
+    @Override
+    public int performInferenceQuestions( TFState tfstate ) {
+        rows.apply(tfstate, candidates, reported);
+        reported.andNot(candidates);
+        for (int lineal = reported.nextSetBit(0); lineal >= 0;
+                 lineal = reported.nextSetBit(lineal + 1)) {
+            tfstate.set(lineal % WorldDim + 1, lineal / WorldDim + 1, "X");
+        }
+        reported.clear();
+        reported.or(candidates);
+        return candidates.cardinality();
+    }
+
+    /**
+    * Remove from the possible positions the square of radius r centered
+    * at (x,y), clipped to the limits of the world
+    **/
+    private void clearSquare(int x, int y, int r) {
+        int fromY = Math.max(1, y - r), toY = Math.min(WorldDim, y + r);
+        if (fromY > toY) {
+            return;
+        }
+        for (int i = Math.max(1, x - r); i <= Math.min(WorldDim, x + r); i++) {
+            int column = (i - 1) * WorldDim;
+            candidates.clear(column + fromY - 1, column + toY);
+        }
+    }
+
+    /**
+    * Remove from the possible positions all the positions outside the square
+    * of radius r centered at (x,y)
+    **/
+    private void keepSquare(int x, int y, int r) {
+        int fromX = Math.max(1, x - r), toX = Math.min(WorldDim, x + r);
+        int fromY = Math.max(1, y - r), toY = Math.min(WorldDim, y + r);
+        if (fromX > toX || fromY > toY) {
+            candidates.clear();
+            return;
+        }
+        candidates.clear(0, (fromX - 1) * WorldDim);
+        candidates.clear(toX * WorldDim, WorldLinealDim);
+        for (int i = fromX; i <= toX; i++) {
+            int column = (i - 1) * WorldDim;
+            candidates.clear(column, column + fromY - 1);
+            candidates.clear(column + toY, column + WorldDim);
+        }
+    }
+
+}
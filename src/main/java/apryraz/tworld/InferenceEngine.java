@@ -0,0 +1,87 @@
+package apryraz.tworld;
+
+import java.io.Closeable;
+import java.util.BitSet;
+
+import org.sat4j.specs.*;
+
+/**
+*  Interface for the inference methods that the TreasureFinder agent can use
+*  to discover the positions where the Treasure can NOT be. Every position
+*  (x,y) is identified by its lineal index: (x-1) * WorldDim + (y-1)
+**/
+public interface InferenceEngine extends Closeable {
+
+  /**
+  *  Prepare the knowledge of the agent for a new step, adding the
+  *  conclusions obtained in the previous call to performInferenceQuestions
+  *
+  *  @throws ContradictionException if inserting contradictory clauses in formula.
+  **/
+  void startStep() throws ContradictionException;
+
+  /**
+  *  Add the evidence obtained with the metal detector at the agent position
+  *
+  *  @param x        x coordinate of the agent position
+  *  @param y        y coordinate of the agent position
+  *  @param reading  metal detector reading: 0, 1, 2 or 3
+  *  @throws ContradictionException if inserting contradictory clauses in formula.
+  **/
+  void addDetectorEvidence( int x, int y, int reading ) throws ContradictionException;
+
+  /**
+  *  Add the evidence obtained with the answer of a pirate
+  *
+  *  @param y     y coordinate of the agent position
+  *  @param isUp  true if the pirate said the Treasure is up of the agent
+  *  @throws ContradictionException if inserting contradictory clauses in formula.
+  **/
+  void addPirateEvidence( int y, boolean isUp ) throws ContradictionException;
+
+  /**
+  *  Find the positions where the Treasure can NOT be with the evidence added
+  *  so far, and mark with "X" in the state the ones found in this step
+  *
+  *  @param state the state of knowledge of the agent
+  *  @return the number of positions where the Treasure can still be
+  *  @throws ContradictionException if inserting contradictory clauses in formula.
+  *  @throws TimeoutException if the solver does not answer in time
+  **/
+  int performInferenceQuestions( TFState state ) throws ContradictionException,
+          TimeoutException;
+
+  /**
+  *  Returns the set of positions where the Treasure can still be, as
+  *  obtained in the last call to performInferenceQuestions
+  *
+  *  @return set of lineal indexes of the possible positions
+  **/
+  BitSet getCandidates();
+
+  /**
+  *  Replace the knowledge of the engine by a set of possible positions, as
+  *  if the previous steps had been performed, to continue from a saved
+  *  state of the agent
+  *
+  *  @param possible set of lineal indexes of the possible positions
+  *  @throws ContradictionException if inserting contradictory clauses in formula.
+  **/
+  void restoreCandidates( BitSet possible ) throws ContradictionException;
+
+  /**
+  *  Set the metrics where the engine reports its calls to the SAT solver,
+  *  clauses added and size of the formula, if it has any
+  *
+  *  @param metrics the metrics, NullMetrics.INSTANCE to not report anything
+  **/
+  void setMetrics( AgentMetrics metrics );
+
+  /**
+  *  Release the resources of the engine, as the threads of the parallel
+  *  engine. The engine can not be used after that.
+  **/
+  @Override
+  void close();
+
+}
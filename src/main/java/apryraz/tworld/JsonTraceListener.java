@@ -0,0 +1,136 @@
+package apryraz.tworld;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+*  Listener that writes a compact trace of the run, with one JSON object
+*  per line for each event. The state of the agent is not written, only the
+*  number of positions still possible after each step. Messages received by
+*  the environment are not written either, as the agent events already
+*  describe them.
+**/
+public class JsonTraceListener implements TreasureWorldListener {
+
+  /**
+  *  Where the trace is written
+  **/
+  Writer out;
+  /**
+  *  Buffer reused to build each line of the trace
+  **/
+  StringBuilder line = new StringBuilder(96);
+
+  /**
+  *  Class constructor
+  *
+  *  @param out writer where the trace is written. It is not closed by the
+  *             listener, but it is flushed at the end of every step
+  **/
+  public JsonTraceListener( Writer out ) {
+    this.out = out;
+  }
+
+  @Override
+  public void agentStarted( TFState state ) {
+    begin("start").field("dim", state.getDim()).end();
+  }
+
+  @Override
+  public void fileOpened( String fileName, boolean pirates ) {
+    begin(pirates ? "piratesfile" : "stepsfile").field("name", fileName).end();
+  }
+
+  @Override
+  public void moving( int x, int y ) {
+    begin("moveto").field("x", x).field("y", y).end();
+  }
+
+  @Override
+  public void moved( int x, int y, int pirate ) {
+    begin("movedto").field("x", x).field("y", y).field("pirate", pirate).end();
+  }
+
+  @Override
+  public void noMoreSteps() {
+    begin("nomoresteps").end();
+  }
+
+  @Override
+  public void detecting( int x, int y ) {
+    begin("detectsat").field("x", x).field("y", y).end();
+  }
+
+  @Override
+  public void detectorReading( int reading ) {
+    begin("reading").field("value", reading).end();
+  }
+
+  @Override
+  public void invalidDetectorReading( String answer ) {
+    begin("invalidreading").field("answer", answer).end();
+  }
+
+  @Override
+  public void askingPirate( int x, int y ) {
+    begin("treasureup").field("x", x).field("y", y).end();
+  }
+
+  @Override
+  public void treasureLocated( int x, int y ) {
+    begin("located").field("x", x).field("y", y).end();
+  }
+
+  @Override
+  public void stepFinished( int step, TFState state ) {
+    begin("step").field("step", step).field("possible", state.countCandidates()).end();
+    try {
+      out.flush();
+    } catch (IOException ex) {
+      Logger.getLogger(JsonTraceListener.class.getName()).log(Level.SEVERE, null, ex);
+    }
+  }
+
+  @Override
+  public void messageReceived( TMessage msg ) { }
+
+  private JsonTraceListener begin( String event ) {
+    line.setLength(0);
+    line.append("{\"event\":\"").append(event).append('"');
+    return this;
+  }
+
+  private JsonTraceListener field( String name, int value ) {
+    line.append(",\"").append(name).append("\":").append(value);
+    return this;
+  }
+
+  private JsonTraceListener field( String name, String value ) {
+    line.append(",\"").append(name).append("\":\"");
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        line.append('\\');
+      }
+      if (c < ' ') {
+        line.append(String.format("\\u%04x", (int) c));
+      } else {
+        line.append(c);
+      }
+    }
+    line.append('"');
+    return this;
+  }
+
+  private void end() {
+    line.append("}\n");
+    try {
+      out.append(line);
+    } catch (IOException ex) {
+      Logger.getLogger(JsonTraceListener.class.getName()).log(Level.SEVERE, null, ex);
+    }
+  }
+
+}
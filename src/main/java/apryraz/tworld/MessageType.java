@@ -0,0 +1,29 @@
+package apryraz.tworld;
+
+/**
+*  Types of the messages exchanged between the agent and the environment
+*  with the typed protocol (class TMessage). The name of the message type
+*  used by the string protocol (class AMessage) is given for each one.
+**/
+public enum MessageType {
+  /** Request to move to (x,y): "moveto" **/
+  MOVETO,
+  /** Request for the metal detector reading at (x,y): "detectsat" **/
+  DETECTSAT,
+  /** Request to the pirate at (x,y): "treasureup" **/
+  TREASUREUP,
+  /** Batched step request to (x,y), see TreasureWorldEnv.step: "step" **/
+  STEP,
+  /** Answer: moved to (x,y), value is 1 if there is a pirate: "movedto" **/
+  MOVEDTO,
+  /** Answer: (x,y) is outside the world: "notmovedto" **/
+  NOTMOVEDTO,
+  /** Answer: value is the metal detector reading at (x,y): "0" .. "3" **/
+  DETECTED,
+  /** Answer: value is 1 if the Treasure is up of (x,y): "yes" or "no" **/
+  PIRATEANSWER,
+  /** Answer to an unknown request: "voidmsg" **/
+  VOIDMSG,
+  /** No message, when the agent has no more steps: "NOMESSAGE" **/
+  NOMESSAGE
+}
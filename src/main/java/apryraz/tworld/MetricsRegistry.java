@@ -0,0 +1,198 @@
+package apryraz.tworld;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+*  Metrics that keep the values reported by an agent and its inference
+*  engine: time and number of executions of every phase, calls to the SAT
+*  solver and their answers, clauses added, size of the solver and positions
+*  still possible. The values are read with snapshot(), and they can also be
+*  printed every some steps.
+*
+*  Values can be reported from several threads, as the replicas of the
+*  parallel engine do.
+**/
+public class MetricsRegistry implements AgentMetrics {
+
+  static final int NUM_PHASES = Phase.values().length;
+
+  AtomicLongArray phaseNanos = new AtomicLongArray(NUM_PHASES);
+  AtomicLongArray phaseCount = new AtomicLongArray(NUM_PHASES);
+  AtomicLong satCalls = new AtomicLong(), satAnswers = new AtomicLong();
+  AtomicLong clauses = new AtomicLong(), clausesAtLastStep = new AtomicLong();
+  volatile long clausesLastStep;
+  volatile int numVariables, numClauses, steps, candidates;
+/**
+*  Number of steps between two prints of the metrics, 0 to not print them,
+*  and stream where they are printed
+**/
+  int dumpPeriod;
+  PrintStream out;
+
+
+ /**
+ *  Class constructor, for metrics that are not printed
+ **/
+  public MetricsRegistry() {
+    this(0, null);
+  }
+
+ /**
+ *  Class constructor, for metrics that are printed every some steps
+ *
+ *  @param period number of steps between two prints, 0 to not print them
+ *  @param stream stream where the metrics are printed, needed when period
+ *                is greater than 0
+ **/
+  public MetricsRegistry( int period, PrintStream stream ) {
+    if (period < 0) {
+      throw new IllegalArgumentException("Period must be at least 0: " + period);
+    }
+    if (period > 0 && stream == null) {
+      throw new IllegalArgumentException("Stream needed to print the metrics every " + period + " steps");
+    }
+    dumpPeriod = period;
+    out = stream;
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return true;
+  }
+
+  @Override
+  public void phaseTime( Phase phase, long nanos, int steps ) {
+    phaseNanos.addAndGet(phase.ordinal(), nanos);
+    phaseCount.addAndGet(phase.ordinal(), steps);
+  }
+
+  @Override
+  public void satCall( boolean satisfiable ) {
+    satCalls.incrementAndGet();
+    if (satisfiable) {
+      satAnswers.incrementAndGet();
+    }
+  }
+
+  @Override
+  public void clausesAdded( int count ) {
+    clauses.addAndGet(count);
+  }
+
+  @Override
+  public void solverSize( int variables, int constraints ) {
+    numVariables = variables;
+    numClauses = constraints;
+  }
+
+  @Override
+  public void stepFinished( int step, int possible ) {
+    long total = clauses.get();
+    clausesLastStep = total - clausesAtLastStep.getAndSet(total);
+    steps = step;
+    candidates = possible;
+    if (dumpPeriod > 0 && step % dumpPeriod == 0) {
+      out.println("METRICS " + snapshot());
+    }
+  }
+
+ /**
+ *  Returns the current values of the metrics
+ *
+ *  @return a snapshot with the values
+ **/
+  public Snapshot snapshot() {
+    Snapshot s = new Snapshot();
+    for (int p = 0; p < NUM_PHASES; p++) {
+      s.phaseNanos[p] = phaseNanos.get(p);
+      s.phaseCount[p] = phaseCount.get(p);
+    }
+    s.satCalls = satCalls.get();
+    s.satAnswers = satAnswers.get();
+    s.clauses = clauses.get();
+    s.clausesLastStep = clausesLastStep;
+    s.numVariables = numVariables;
+    s.numClauses = numClauses;
+    s.steps = steps;
+    s.candidates = candidates;
+    return s;
+  }
+
+ /**
+ *  Values of the metrics at a given time
+ **/
+  public static class Snapshot {
+    long[] phaseNanos = new long[NUM_PHASES];
+    long[] phaseCount = new long[NUM_PHASES];
+    long satCalls, satAnswers, clauses, clausesLastStep;
+    int numVariables, numClauses, steps, candidates;
+
+    public long getPhaseNanos( Phase phase ) {
+      return phaseNanos[phase.ordinal()];
+    }
+
+    /**
+    *  Returns the number of steps measured in a phase
+    **/
+    public long getPhaseCount( Phase phase ) {
+      return phaseCount[phase.ordinal()];
+    }
+
+    public long getSatCalls() {
+      return satCalls;
+    }
+
+    public long getSatAnswers() {
+      return satAnswers;
+    }
+
+    public long getUnsatAnswers() {
+      return satCalls - satAnswers;
+    }
+
+    public long getClauses() {
+      return clauses;
+    }
+
+    public long getClausesLastStep() {
+      return clausesLastStep;
+    }
+
+    public int getNumVariables() {
+      return numVariables;
+    }
+
+    public int getNumClauses() {
+      return numClauses;
+    }
+
+    public int getSteps() {
+      return steps;
+    }
+
+    public int getCandidates() {
+      return candidates;
+    }
+
+    public String toString() {
+      StringBuilder text = new StringBuilder();
+      text.append("steps: ").append(steps).append(" candidates: ").append(candidates);
+      for (Phase phase : Phase.values()) {
+        text.append(' ').append(phase.name().toLowerCase()).append("_us: ")
+            .append(phaseNanos[phase.ordinal()] / 1000);
+      }
+      text.append(" sat_calls: ").append(satCalls)
+          .append(" sat: ").append(satAnswers)
+          .append(" unsat: ").append(satCalls - satAnswers)
+          .append(" clauses: ").append(clauses)
+          .append(" clauses_last_step: ").append(clausesLastStep)
+          .append(" solver_vars: ").append(numVariables)
+          .append(" solver_clauses: ").append(numClauses);
+      return text.toString();
+    }
+  }
+
+}
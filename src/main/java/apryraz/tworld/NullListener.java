@@ -0,0 +1,50 @@
+package apryraz.tworld;
+
+/**
+*  Listener that ignores all the events. It can also be extended by the
+*  listeners that are interested only in some of the events.
+**/
+public class NullListener implements TreasureWorldListener {
+
+  /**
+  *  Shared instance, to use when no output is wanted
+  **/
+  public static final NullListener INSTANCE = new NullListener();
+
+  @Override
+  public void agentStarted( TFState state ) { }
+
+  @Override
+  public void fileOpened( String fileName, boolean pirates ) { }
+
+  @Override
+  public void moving( int x, int y ) { }
+
+  @Override
+  public void moved( int x, int y, int pirate ) { }
+
+  @Override
+  public void noMoreSteps() { }
+
+  @Override
+  public void detecting( int x, int y ) { }
+
+  @Override
+  public void detectorReading( int reading ) { }
+
+  @Override
+  public void invalidDetectorReading( String answer ) { }
+
+  @Override
+  public void askingPirate( int x, int y ) { }
+
+  @Override
+  public void treasureLocated( int x, int y ) { }
+
+  @Override
+  public void stepFinished( int step, TFState state ) { }
+
+  @Override
+  public void messageReceived( TMessage msg ) { }
+
+}
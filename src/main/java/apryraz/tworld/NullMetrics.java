@@ -0,0 +1,31 @@
+package apryraz.tworld;
+
+/**
+*  Metrics that are not enabled, so nothing is measured. It can also be
+*  extended to receive only some of the values, overriding isEnabled.
+**/
+public class NullMetrics implements AgentMetrics {
+
+  public static final NullMetrics INSTANCE = new NullMetrics();
+
+  @Override
+  public boolean isEnabled() {
+    return false;
+  }
+
+  @Override
+  public void phaseTime( Phase phase, long nanos, int steps ) { }
+
+  @Override
+  public void satCall( boolean satisfiable ) { }
+
+  @Override
+  public void clausesAdded( int count ) { }
+
+  @Override
+  public void solverSize( int numVariables, int numClauses ) { }
+
+  @Override
+  public void stepFinished( int step, int candidates ) { }
+
+}
@@ -0,0 +1,345 @@
+package apryraz.tworld;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.sat4j.specs.*;
+
+
+/**
+*  Inference engine that performs the questions of the SAT engine in
+*  parallel. It keeps a replica of the SatInferenceEngine for every thread,
+*  all of them with the same formula and knowledge. In every step, the
+*  positions still possible are split in one shard for each replica, each
+*  replica checks its shard with its own solver, and then the conclusions of
+*  all the shards are added to every replica.
+*
+*  The answer for every position does not depend on the shard where it is
+*  checked, so the states obtained are the same as with the SAT engine.
+**/
+public class ParallelSatInferenceEngine implements InferenceEngine {
+
+/**
+*  Replicas of the SAT engine, one for each thread
+**/
+    SatInferenceEngine[] replicas;
+/**
+*  Pool of threads that run the work of the replicas
+**/
+    ExecutorService executor;
+/**
+*  Dimension of the world and total size of the world (Dim^2)
+**/
+    int WorldDim, WorldLinealDim;
+/**
+*  Metrics where the size of the formula is reported
+**/
+    AgentMetrics metrics = NullMetrics.INSTANCE;
+
+
+   /**
+     Class constructor, with replicas that add the knowledge as clauses.
+
+     @param WDim the dimension of the Treasure World
+     @param numThreads number of threads and solver replicas to use
+   **/
+    public ParallelSatInferenceEngine(int WDim, int numThreads)
+    {
+        this(WDim, numThreads, false);
+    }
+
+   /**
+     Class constructor.
+
+     @param WDim the dimension of the Treasure World
+     @param numThreads number of threads and solver replicas to use
+     @param singleSetMode true if the replicas use a single set of Treasure
+            variables (see SatInferenceEngine)
+   **/
+    public ParallelSatInferenceEngine(int WDim, int numThreads, boolean singleSetMode)
+    {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1: " + numThreads);
+        }
+        WorldDim = WDim;
+        WorldLinealDim = WorldDim * WorldDim;
+        replicas = new SatInferenceEngine[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            replicas[i] = new SatInferenceEngine(WDim, singleSetMode);
+        }
+        executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "tworld-inference");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+      Enable or disable the use of the models found by the solvers, in all
+      the replicas (see SatInferenceEngine.setModelPruning)
+
+      @param enabled true to use the models found by the solvers
+    **/
+    public void setModelPruning( boolean enabled ) {
+        for (SatInferenceEngine replica : replicas) {
+            replica.setModelPruning(enabled);
+        }
+    }
+
+    /**
+      Set the number of steps between two rebuilds of the solvers of all the
+      replicas (see SatInferenceEngine.setRebuildInterval)
+
+      @param steps number of steps between rebuilds, or 0 to never rebuild
+    **/
+    public void setRebuildInterval( int steps ) {
+        for (SatInferenceEngine replica : replicas) {
+            replica.setRebuildInterval(steps);
+        }
+    }
+
+    /**
+    *  Set the metrics of the engine. All the replicas report their calls to
+    *  the solver, but only the first one reports the clauses added, as all
+    *  of them add the same clauses.
+    *
+    *  @param engineMetrics the metrics, NullMetrics.INSTANCE to not report anything
+    **/
+    @Override
+    public void setMetrics( final AgentMetrics engineMetrics ) {
+        metrics = engineMetrics;
+        replicas[0].setMetrics(engineMetrics);
+        AgentMetrics satCallsOnly = new NullMetrics() {
+            @Override
+            public boolean isEnabled() {
+                return engineMetrics.isEnabled();
+            }
+
+            @Override
+            public void satCall( boolean satisfiable ) {
+                engineMetrics.satCall(satisfiable);
+            }
+        };
+        for (int i = 1; i < replicas.length; i++) {
+            replicas[i].setMetrics(satCallsOnly);
+        }
+    }
+
+    /**
+    *  Returns the number of threads and solver replicas used
+    *
+    *  @return number of threads
+    **/
+    public int getNumThreads() {
+        return replicas.length;
+    }
+
+    /**
+    *  Stop the threads of the engine. The engine can not be used after that.
+    **/
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    @Override
+    public BitSet getCandidates() {
+        return replicas[0].getCandidates();
+    }
+
+    @Override
+    public void restoreCandidates(final BitSet possible) throws ContradictionException {
+        List<Callable<BitSet>> tasks = new ArrayList<>(replicas.length);
+        for (final SatInferenceEngine replica : replicas) {
+            tasks.add(new Callable<BitSet>() {
+                @Override
+                public BitSet call() throws ContradictionException {
+                    replica.restoreCandidates(possible);
+                    return null;
+                }
+            });
+        }
+        runEvidenceTasks(tasks);
+    }
+
+    @Override
+    public void startStep() throws ContradictionException {
+        List<Callable<BitSet>> tasks = new ArrayList<>(replicas.length);
+        for (final SatInferenceEngine replica : replicas) {
+            tasks.add(new Callable<BitSet>() {
+                @Override
+                public BitSet call() throws ContradictionException {
+                    replica.startStep();
+                    return null;
+                }
+            });
+        }
+        runEvidenceTasks(tasks);
+    }
+
+    @Override
+    public void addDetectorEvidence(final int x, final int y, final int reading)
+            throws ContradictionException {
+        List<Callable<BitSet>> tasks = new ArrayList<>(replicas.length);
+        for (final SatInferenceEngine replica : replicas) {
+            tasks.add(new Callable<BitSet>() {
+                @Override
+                public BitSet call() throws ContradictionException {
+                    replica.addDetectorEvidence(x, y, reading);
+                    return null;
+                }
+            });
+        }
+        runEvidenceTasks(tasks);
+    }
+
+    @Override
+    public void addPirateEvidence(int y, boolean isUp)
+            throws ContradictionException {
+        // Only the row bounds of each replica change, not worth a task
+        for (SatInferenceEngine replica : replicas) {
+            replica.addPirateEvidence(y, isUp);
+        }
+    }
+
+    /**
+    * Split the positions still possible in one shard for each replica, with
+    * the same number of positions, and check every shard in parallel. Then,
+    * add the conclusions of all the shards to every replica, and mark them
+    * in the state of the agent.
+    *
+    * @param tfstate the state of knowledge of the agent
+    * @return the number of positions where the Treasure can still be
+    **/
+    @Override
+    public int performInferenceQuestions( TFState tfstate ) throws
+            ContradictionException, TimeoutException
+    {
+        // Only the first replica marks the rows left out in the state
+        replicas[0].applyRowBounds(tfstate);
+        for (int i = 1; i < replicas.length; i++) {
+            replicas[i].applyRowBounds(null);
+        }
+        final int[] bounds = shardBounds(getCandidates());
+        List<Callable<BitSet>> tasks = new ArrayList<>(replicas.length);
+        for (int i = 0; i < replicas.length; i++) {
+            final SatInferenceEngine replica = replicas[i];
+            final int shard = i;
+            tasks.add(new Callable<BitSet>() {
+                @Override
+                public BitSet call() throws TimeoutException {
+                    return replica.findImpossiblePositions(bounds[shard], bounds[shard + 1]);
+                }
+            });
+        }
+        final BitSet impossible = new BitSet(WorldLinealDim);
+        for (BitSet shardImpossible : runTasks(tasks)) {
+            impossible.or(shardImpossible);
+        }
+
+        // Only the first replica marks the conclusions in the state
+        replicas[0].addConclusions(impossible, tfstate);
+        tasks.clear();
+        for (int i = 1; i < replicas.length; i++) {
+            final SatInferenceEngine replica = replicas[i];
+            tasks.add(new Callable<BitSet>() {
+                @Override
+                public BitSet call() {
+                    replica.addConclusions(impossible, null);
+                    return null;
+                }
+            });
+        }
+        runTasks(tasks);
+        if (metrics.isEnabled()) {
+            ISolver solver = replicas[0].getSolver();
+            metrics.solverSize(solver.nVars(), solver.nConstraints());
+        }
+        return getCandidates().cardinality();
+    }
+
+    /**
+    * Compute the limits of the shards, so every shard has the same number
+    * of possible positions (but for the rounding)
+    *
+    * @param candidates the set of positions still possible
+    * @return array with the first lineal index of each shard, and the end
+    *         of the last shard at the last position
+    **/
+    private int[] shardBounds( BitSet candidates ) {
+        int numShards = replicas.length;
+        int[] bounds = new int[numShards + 1];
+        int total = candidates.cardinality();
+        int shard = 1, seen = 0;
+        for (int lineal = candidates.nextSetBit(0); lineal >= 0 && shard < numShards;
+                 lineal = candidates.nextSetBit(lineal + 1)) {
+            while (shard < numShards && seen == (long) total * shard / numShards) {
+                bounds[shard++] = lineal;
+            }
+            seen++;
+        }
+        while (shard <= numShards) {
+            bounds[shard++] = WorldLinealDim;
+        }
+        return bounds;
+    }
+
+    /**
+    * Run a list of tasks that only add evidence to the replicas
+    *
+    * @throws ContradictionException if inserting contradictory clauses in formula.
+    **/
+    private void runEvidenceTasks( List<Callable<BitSet>> tasks ) throws ContradictionException {
+        try {
+            runTasks(tasks);
+        } catch (TimeoutException ex) {
+            // Adding evidence does not call the solver
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+    * Run a list of tasks in the threads of the engine, and wait for all of
+    * them to finish
+    *
+    * @return the results of the tasks, in the same order as the tasks
+    * @throws ContradictionException if a task inserted contradictory clauses.
+    * @throws TimeoutException if a solver did not answer in time
+    **/
+    private List<BitSet> runTasks( List<Callable<BitSet>> tasks ) throws
+            ContradictionException, TimeoutException {
+        List<BitSet> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<BitSet> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the solver replicas", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof ContradictionException) {
+                throw (ContradictionException) cause;
+            } else if (cause instanceof TimeoutException) {
+                throw (TimeoutException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        return results;
+    }
+
+}
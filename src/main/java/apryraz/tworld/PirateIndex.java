@@ -0,0 +1,171 @@
+package apryraz.tworld;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+
+/**
+*  Set of the positions of the pirates of a Treasure World, to check in
+*  constant time whether there is a pirate at a position.
+*
+*  If the world is small compared to the number of pirates, the positions
+*  within the world are stored in a bitset over the whole grid, indexed by
+*  (x-1) * WorldDim + (y-1). Otherwise (huge worlds with few pirates), they
+*  are stored in a hash set of long keys with open addressing, so the memory
+*  used only depends on the number of pirates. Positions outside the world
+*  are always stored in the hash set.
+**/
+public class PirateIndex {
+
+/**
+*  Largest grid stored as a bitset when there are few pirates (64 KB)
+**/
+  static final long MIN_DENSE_SIZE = 1L << 19;
+/**
+*  Key of the empty slots of the hash table. Positions are keys
+*  (x << 32) | y, so this is also the key of (Integer.MIN_VALUE, 0), which
+*  is kept in emptyKeyAdded instead of the table
+**/
+  static final long EMPTY = Long.MIN_VALUE;
+
+  int WorldDim;
+/**
+*  Positions within the world, or null if all of them are in the hash set
+**/
+  BitSet grid;
+/**
+*  Hash table of the keys of the other positions, with a power of two size
+**/
+  long[] table;
+  int size;
+/**
+*  True if there is a pirate at the position whose key is EMPTY
+**/
+  boolean emptyKeyAdded;
+
+
+ /**
+ *  Class constructor, for the list of pirates of a world
+ *
+ *  @param dim dimension of the world
+ *  @param pirates list of pirates locations
+ **/
+  public PirateIndex( int dim, List<Position> pirates ) {
+    WorldDim = dim;
+    long gridSize = (long) dim * dim;
+    if (gridSize <= Integer.MAX_VALUE
+        && gridSize <= Math.max(MIN_DENSE_SIZE, 64L * pirates.size())) {
+      grid = new BitSet((int) gridSize);
+    }
+    // Load factor at most 1/2, with all the pirates in the table
+    int capacity = 4;
+    while (capacity < 2 * pirates.size() && capacity < (1 << 30)) {
+      capacity <<= 1;
+    }
+    table = new long[grid == null ? capacity : 4];
+    Arrays.fill(table, EMPTY);
+    if (pirates instanceof PositionList) {
+      PositionList list = (PositionList) pirates;
+      for (int i = 0; i < list.size(); i++) {
+        add(list.getX(i), list.getY(i));
+      }
+    } else {
+      for (int i = 0; i < pirates.size(); i++) {
+        Position pirate = pirates.get(i);
+        add(pirate.x, pirate.y);
+      }
+    }
+  }
+
+ /**
+ *  Add a pirate at position (x,y)
+ *
+ *  @param x  x coordinate of the pirate
+ *  @param y  y coordinate of the pirate
+ **/
+  public void add( int x, int y ) {
+    if (grid != null && withinLimits(x, y)) {
+      grid.set((x - 1) * WorldDim + (y - 1));
+      return;
+    }
+    long key = key(x, y);
+    if (key == EMPTY) {
+      emptyKeyAdded = true;
+      return;
+    }
+    if (2 * (size + 1) > table.length) {
+      resize(2 * table.length);
+    }
+    if (insert(table, key)) {
+      size++;
+    }
+  }
+
+ /**
+ *  Check if there is a pirate in position (x,y)
+ *
+ *  @param x  x coordinate of the position
+ *  @param y  y coordinate of the position
+ *  @return true if (x,y) contains a pirate
+ **/
+  public boolean contains( int x, int y ) {
+    if (grid != null && withinLimits(x, y)) {
+      return grid.get((x - 1) * WorldDim + (y - 1));
+    }
+    long key = key(x, y);
+    if (key == EMPTY) {
+      return emptyKeyAdded;
+    }
+    int mask = table.length - 1;
+    for (int slot = hash(key) & mask; table[slot] != EMPTY; slot = (slot + 1) & mask) {
+      if (table[slot] == key) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean withinLimits( int x, int y ) {
+    return x >= 1 && x <= WorldDim && y >= 1 && y <= WorldDim;
+  }
+
+  private void resize( int capacity ) {
+    long[] newTable = new long[capacity];
+    Arrays.fill(newTable, EMPTY);
+    for (long key : table) {
+      if (key != EMPTY) {
+        insert(newTable, key);
+      }
+    }
+    table = newTable;
+  }
+
+ /**
+ *  Insert a key in a hash table, if not already there
+ *
+ *  @return true if the key has been inserted
+ **/
+  private static boolean insert( long[] hashTable, long key ) {
+    int mask = hashTable.length - 1;
+    int slot = hash(key) & mask;
+    while (hashTable[slot] != EMPTY) {
+      if (hashTable[slot] == key) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+    hashTable[slot] = key;
+    return true;
+  }
+
+  private static long key( int x, int y ) {
+    return ((long) x << 32) | (y & 0xffffffffL);
+  }
+
+  private static int hash( long key ) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+}
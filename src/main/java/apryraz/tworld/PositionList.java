@@ -0,0 +1,80 @@
+package apryraz.tworld;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+
+/**
+*  List of positions stored as two arrays of ints, so a long sequence of
+*  steps or pirates takes 8 bytes per position instead of a Position object
+*  for each one. The Position objects returned by get are created on demand.
+**/
+public class PositionList extends AbstractList<Position> implements RandomAccess {
+
+  int[] xs, ys;
+  int size;
+
+
+ /**
+ *  Class constructor, for an empty list
+ *
+ *  @param capacity initial capacity of the list
+ **/
+  public PositionList( int capacity ) {
+    xs = new int[Math.max(1, capacity)];
+    ys = new int[xs.length];
+  }
+
+ /**
+ *  Add position (x,y) at the end of the list
+ *
+ *  @param x  x coordinate of the position
+ *  @param y  y coordinate of the position
+ **/
+  public void add( int x, int y ) {
+    if (size == xs.length) {
+      int capacity = xs.length + (xs.length >> 1) + 1;
+      xs = Arrays.copyOf(xs, capacity);
+      ys = Arrays.copyOf(ys, capacity);
+    }
+    xs[size] = x;
+    ys[size] = y;
+    size++;
+    modCount++;
+  }
+
+  @Override
+  public boolean add( Position position ) {
+    add(position.x, position.y);
+    return true;
+  }
+
+  @Override
+  public Position get( int index ) {
+    checkIndex(index);
+    return new Position(xs[index], ys[index]);
+  }
+
+  public int getX( int index ) {
+    checkIndex(index);
+    return xs[index];
+  }
+
+  public int getY( int index ) {
+    checkIndex(index);
+    return ys[index];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  private void checkIndex( int index ) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+
+}
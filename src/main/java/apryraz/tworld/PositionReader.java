@@ -0,0 +1,191 @@
+package apryraz.tworld;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+
+/**
+*  Reader of the positions of a steps file or a pirates file, that have a
+*  line with the positions: x1,y1 x2,y2 ...  xn,yn
+*
+*  The positions are parsed directly from the bytes read from a channel,
+*  through a buffer of fixed size, so no Strings are created and the memory
+*  used does not depend on the length of the line. Only the first line of the
+*  file is read, as the loaders of the agent and the environment did.
+*
+*  Positions are read one at a time:
+*     while (reader.next()) { use reader.getX() and reader.getY() }
+**/
+public class PositionReader implements Closeable {
+
+  static final int BUFFER_SIZE = 1 << 16;
+
+  ReadableByteChannel channel;
+  ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+  boolean endOfLine;
+  long offset;
+  int x, y;
+
+
+ /**
+ *  Class constructor, for a given channel
+ *
+ *  @param readChannel the channel to read from
+ **/
+  public PositionReader( ReadableByteChannel readChannel ) {
+    channel = readChannel;
+    buffer.flip();
+  }
+
+ /**
+ *  Open a reader of a file
+ *
+ *  @param fileName the name of the file
+ *  @return the reader of the positions of the file
+ *  @throws IOException if the file can not be opened
+ **/
+  public static PositionReader open( String fileName ) throws IOException {
+    return new PositionReader(new FileInputStream(fileName).getChannel());
+  }
+
+ /**
+ *  Read the next position of the line
+ *
+ *  @return true if a position has been read, false at the end of the line
+ *  @throws IOException if the channel can not be read, or the line has
+ *          something that is not a position
+ **/
+  public boolean next() throws IOException {
+    int c = skipSpaces();
+    if (c < 0) {
+      return false;
+    }
+    x = readInt(c);
+    if (peek() != ',') {
+      throw error();
+    }
+    read();
+    y = readInt(read());
+    c = peek();
+    if (c >= 0 && c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+      throw error();
+    }
+    return true;
+  }
+
+  public int getX() {
+    return x;
+  }
+
+  public int getY() {
+    return y;
+  }
+
+ /**
+ *  Read all the positions of the line, up to a maximum
+ *
+ *  @param max maximum number of positions to read
+ *  @return the list with the positions read
+ *  @throws IOException if the positions can not be read
+ **/
+  public PositionList readAll( int max ) throws IOException {
+    PositionList positions = new PositionList(Math.min(max, 1024));
+    while (positions.size() < max && next()) {
+      positions.add(x, y);
+    }
+    return positions;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+ /**
+ *  Skip the spaces before the next position
+ *
+ *  @return the first character of the position, or -1 at the end of line
+ **/
+  private int skipSpaces() throws IOException {
+    while (true) {
+      int c = read();
+      if (c != ' ' && c != '\t' && c != '\r') {
+        return c;
+      }
+    }
+  }
+
+  private int readInt( int c ) throws IOException {
+    boolean negative = c == '-';
+    if (negative) {
+      c = read();
+    }
+    if (c < '0' || c > '9') {
+      throw error();
+    }
+    long value = 0;
+    while (true) {
+      value = value * 10 + (c - '0');
+      if (value > Integer.MAX_VALUE + 1L) {
+        throw error();
+      }
+      int d = peek();
+      if (d < '0' || d > '9') {
+        break;
+      }
+      c = read();
+    }
+    value = negative ? -value : value;
+    if (value > Integer.MAX_VALUE) {
+      throw error();
+    }
+    return (int) value;
+  }
+
+ /**
+ *  Read the next character, or -1 at the end of the line
+ **/
+  private int read() throws IOException {
+    int c = peek();
+    if (c >= 0) {
+      buffer.get();
+      offset++;
+    }
+    return c;
+  }
+
+ /**
+ *  Returns the next character without reading it, or -1 at the end of the line
+ **/
+  private int peek() throws IOException {
+    if (endOfLine) {
+      return -1;
+    }
+    if (!buffer.hasRemaining()) {
+      buffer.clear();
+      int n = channel.read(buffer);
+      while (n == 0) {
+        n = channel.read(buffer);
+      }
+      buffer.flip();
+      if (n < 0) {
+        endOfLine = true;
+        return -1;
+      }
+    }
+    int c = buffer.get(buffer.position()) & 0xff;
+    if (c == '\n') {
+      endOfLine = true;
+      return -1;
+    }
+    return c;
+  }
+
+  private IOException error() {
+    return new IOException("Invalid position at byte " + offset);
+  }
+
+}
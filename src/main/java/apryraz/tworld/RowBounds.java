@@ -0,0 +1,87 @@
+package apryraz.tworld;
+
+import java.util.BitSet;
+
+
+/**
+*  Interval of rows [minY, maxY] where the Treasure can be, given by the
+*  answers of the pirates. An answer only moves one of the limits, so it is
+*  added in constant time. The rows left out are removed from the sets of
+*  candidates (indexed by the lineal index (x-1) * WorldDim + (y-1)) and
+*  marked in the state of the agent only when the bounds are applied, once
+*  for all the answers received since the last time.
+**/
+class RowBounds {
+
+  int WorldDim;
+  int minY, maxY;
+/**
+*  Bounds when they were applied for the last time
+**/
+  int appliedMinY, appliedMaxY;
+
+
+  RowBounds( int dim ) {
+    WorldDim = dim;
+    reset();
+  }
+
+ /**
+ *  Start again with all the rows of the world
+ **/
+  void reset() {
+    minY = appliedMinY = 1;
+    maxY = appliedMaxY = WorldDim;
+  }
+
+ /**
+ *  Limit the rows with the answer of a pirate at row y
+ *
+ *  @param y     y coordinate of the agent position
+ *  @param isUp  true if the pirate said the Treasure is up of the agent
+ **/
+  void addPirateAnswer( int y, boolean isUp ) {
+    if (isUp) {
+      minY = Math.max(minY, y + 1);
+    } else {
+      maxY = Math.min(maxY, y);
+    }
+  }
+
+  boolean contains( int y ) {
+    return y >= minY && y <= maxY;
+  }
+
+ /**
+ *  Remove the rows left out since the last call from every set, and mark
+ *  them as NOT possible in the state
+ *
+ *  @param tfstate the state of knowledge of the agent, or null
+ *  @param sets the sets of candidates
+ **/
+  void apply( TFState tfstate, BitSet... sets ) {
+    if (minY == appliedMinY && maxY == appliedMaxY) {
+      return;
+    }
+    // Rows below minY and above maxY that were still in the interval
+    clearRows(appliedMinY, Math.min(minY - 1, appliedMaxY), tfstate, sets);
+    clearRows(Math.max(maxY + 1, appliedMinY), appliedMaxY, tfstate, sets);
+    appliedMinY = minY;
+    appliedMaxY = maxY;
+  }
+
+  private void clearRows( int fromY, int toY, TFState tfstate, BitSet[] sets ) {
+    if (fromY > toY) {
+      return;
+    }
+    for (BitSet set : sets) {
+      for (int column = 0; column < WorldDim * WorldDim; column += WorldDim) {
+        set.clear(column + fromY - 1, column + toY);
+      }
+    }
+    if (tfstate != null) {
+      tfstate.setImpossibleRows(fromY, toY);
+    }
+  }
+
+}
@@ -0,0 +1,724 @@
+package apryraz.tworld;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.sat4j.core.VecInt;
+
+import org.sat4j.specs.*;
+import org.sat4j.minisat.*;
+import org.sat4j.minisat.core.Solver;
+import org.sat4j.minisat.orders.PositiveLiteralSelectionStrategy;
+
+
+/**
+*  Inference engine that stores the rules of the Treasure World and the
+*  evidence obtained by the agent in a boolean formula (Gamma), and uses a
+*  sat4j solver to check which positions can NOT contain the Treasure.
+**/
+public class SatInferenceEngine implements InferenceEngine {
+
+/**
+*  Array of clauses that represent conclusiones obtained in the last
+* call to the inference function, but rewritten using the "past" variables
+**/
+    ArrayList<VecInt> futureToPast = null;
+/**
+*  Set of positions where the Treasure can still be, indexed by the lineal
+*  index of the position (coordToLineal with offset 0). Only these positions
+*  are checked again by performInferenceQuestions()
+**/
+    BitSet candidates;
+/**
+*   SAT solver object that stores the logical boolean formula with the rules
+*   and current knowledge about not possible locations for Treasure
+**/
+    ISolver solver;
+/**
+*   If true, the model obtained with every satisfiable answer of the solver
+*   is used to know that other positions are also possible in the current
+*   step, so these positions are not checked again with the solver
+**/
+    boolean modelPruning = false;
+/**
+*   Set of positions whose future variable has already been asserted as
+*   false with a unit clause, so the same clause is never added twice
+**/
+    BitSet denied;
+/**
+*   Rows where the Treasure can be, given by the pirates. They are not added
+*   to the formula: the rows left out are removed from the candidates before
+*   the questions, so the solver is never asked about them, and the answer
+*   for a position inside the rows does not depend on the other positions.
+**/
+    RowBounds rows;
+/**
+*   Number of steps between two rebuilds of the solver (0 means never), and
+*   number of steps performed since the last rebuild
+**/
+    int rebuildInterval = 0, stepsSinceRebuild = 0;
+/**
+*   If true, the formula only has one set of Treasure variables and the rule
+*   that the Treasure is in some position. The knowledge obtained by the
+*   agent only removes positions, so every NOT possible position is added as
+*   a permanent unit clause of that set, and no past variables are needed.
+**/
+    boolean singleVariableSet;
+/**
+*   Buffers reused for the unit clauses added with the evidence, and for the
+*   literal of every question to the solver, so they are not created again
+*   for each position
+**/
+    VecInt unitClause = new VecInt(1), question = new VecInt(1);
+/**
+*   Metrics where the calls to the solver and the clauses added are reported
+**/
+    AgentMetrics metrics = NullMetrics.INSTANCE;
+/**
+*   Agent position used by the evidence functions
+**/
+    int agentX, agentY;
+/**
+*  Dimension of the world and total size of the world (Dim^2)
+**/
+    int WorldDim, WorldLinealDim;
+
+/**
+*    This set of variables CAN be use to mark the beginning of different sets
+*    of variables in your propositional formula (but you may have more sets of
+*    variables in your solution).
+**/
+    int TreasurePastOffset;
+    int TreasureFutureOffset;
+    int DetectorOffset;
+    int actualLiteral;
+
+
+   /**
+     The class constructor creates the initial Boolean formula with the
+     rules of the Treasure World, where every position is still possible.
+
+     @param WDim the dimension of the Treasure World
+
+   **/
+    public SatInferenceEngine(int WDim)
+    {
+        this(WDim, false);
+    }
+
+   /**
+     Class constructor that allows to choose how the knowledge is stored.
+     With a single set of variables, the formula has only half of the
+     variables (no past variables), and the conclusions of each step are
+     added as unit clauses of the same variables that are asked.
+
+     @param WDim the dimension of the Treasure World
+     @param singleSetMode true to use a single set of Treasure variables,
+            false to use past and future variables
+
+   **/
+    public SatInferenceEngine(int WDim, boolean singleSetMode)
+    {
+        WorldDim = WDim;
+        WorldLinealDim = WorldDim * WorldDim;
+        singleVariableSet = singleSetMode;
+
+        try {
+            solver = buildGamma();
+        } catch (FileNotFoundException ex) {
+            Logger.getLogger(SatInferenceEngine.class.getName()).log(Level.SEVERE, null, ex);
+        } catch (IOException | ContradictionException ex) {
+            Logger.getLogger(SatInferenceEngine.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        candidates = new BitSet(WorldLinealDim);
+        candidates.set(0, WorldLinealDim);  // At the beginning, every position is possible
+        denied = new BitSet(WorldLinealDim);
+        rows = new RowBounds(WorldDim);
+    }
+
+    /**
+      Enable or disable the use of the models found by the solver to settle
+      many positions with a single call to isSatisfiable. When enabled, the
+      solver is asked to prefer positive values in its decisions, so every
+      model found makes true as many future Treasure variables as possible.
+
+      @param enabled true to use the models found by the solver
+    **/
+    public void setModelPruning( boolean enabled ) {
+
+         modelPruning = enabled;
+         if (modelPruning && solver instanceof Solver) {
+             ((Solver) solver).getOrder().setPhaseSelectionStrategy(
+                     new PositiveLiteralSelectionStrategy());
+         }
+    }
+
+    /**
+      Set the number of steps between two rebuilds of the solver. Every
+      rebuild replaces the solver by a new one with the initial formula plus
+      only the current knowledge (one clause for each NOT possible position),
+      so the clauses and learnt information of long runs are discarded.
+
+      @param steps number of steps between rebuilds, or 0 to never rebuild
+    **/
+    public void setRebuildInterval( int steps ) {
+
+         rebuildInterval = steps;
+         stepsSinceRebuild = 0;
+    }
+
+    /**
+    *  Replace the solver with a new one that stores the initial formula and
+    *  a unit clause with the past variable of every NOT possible position.
+    *  Conclusions of the last step not yet added are included too, so
+    *  futureToPast is emptied. With a single set of variables, the past
+    *  variables are the future ones.
+    *
+    *  @throws ContradictionException if inserting contradictory clauses in formula.
+    **/
+    public void rebuildSolver() throws ContradictionException
+    {
+        try {
+            solver = buildGamma();
+        } catch (IOException ex) {
+            Logger.getLogger(SatInferenceEngine.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        setModelPruning(modelPruning);
+        stepsSinceRebuild = 0;
+        int added = 0;
+        for (int lineal = candidates.nextClearBit(0); lineal < WorldLinealDim;
+                 lineal = candidates.nextClearBit(lineal + 1)) {
+            if (!rows.contains(lineal % WorldDim + 1)) {
+                // Left out by the pirates, never asked to the solver
+                continue;
+            }
+            VecInt clause = new VecInt();
+            clause.insertFirst(-(lineal + TreasurePastOffset));
+            solver.addClause(clause);
+            added++;
+        }
+        if (metrics.isEnabled()) {
+            metrics.clausesAdded(added);
+        }
+        // Every NOT possible position is already false in the new formula
+        denied.clear();
+        denied.set(0, WorldLinealDim);
+        denied.andNot(candidates);
+        futureToPast = null;
+    }
+
+    /**
+    *  Returns the solver object where the formula is stored
+    *
+    *  @return the solver object
+    **/
+    public ISolver getSolver() {
+        return solver;
+    }
+
+    /**
+    *  Replace the knowledge of the engine by a set of possible positions.
+    *  Every NOT possible position is added as a unit clause with its past
+    *  variable, as rebuildSolver does. If the engine was just created, Gamma
+    *  is not built again, so this is much faster than performing again all
+    *  the steps.
+    *
+    *  @param possible set of lineal indexes of the possible positions
+    *  @throws ContradictionException if inserting contradictory clauses in formula.
+    **/
+    @Override
+    public void restoreCandidates( BitSet possible ) throws ContradictionException {
+        if (!denied.isEmpty() || futureToPast != null) {
+            // The formula has evidence of previous steps, start from Gamma
+            try {
+                solver = buildGamma();
+            } catch (IOException ex) {
+                Logger.getLogger(SatInferenceEngine.class.getName()).log(Level.SEVERE, null, ex);
+            }
+            setModelPruning(modelPruning);
+        }
+        candidates.clear();
+        candidates.or(possible);
+        denied.clear();
+        futureToPast = null;
+        stepsSinceRebuild = 0;
+        rows.reset();
+        for (int lineal = candidates.nextClearBit(0); lineal < WorldLinealDim;
+                 lineal = candidates.nextClearBit(lineal + 1)) {
+            denied.set(lineal);
+            unitClause.clear();
+            unitClause.push(-(lineal + TreasurePastOffset));
+            solver.addClause(unitClause);
+        }
+    }
+
+    @Override
+    public void setMetrics( AgentMetrics engineMetrics ) {
+        metrics = engineMetrics;
+    }
+
+    @Override
+    public void close() {
+        // The solver runs in the thread of the caller, nothing to release
+    }
+
+    @Override
+    public BitSet getCandidates() {
+        return candidates;
+    }
+
+    /**
+    *  Add the conclusions obtained in the previous step, but as clauses
+    *  that use the "past" variables
+    *
+    *  @throws ContradictionException if inserting contradictory clauses in formula.
+    **/
+    @Override
+    public void startStep() throws ContradictionException {
+        if (rebuildInterval > 0 && ++stepsSinceRebuild >= rebuildInterval) {
+            rebuildSolver();
+        } else {
+            addLastFutureClausesToPastClauses();
+        }
+    }
+
+    /**
+    * Adds the clauses obtained with the metal sensor information to the formula Gamma.
+    *
+    * @param x        x coordinate of position.
+    * @param y        y coordinate of position.
+    * @param reading  metal sensor can give four different readings: 0, 1, 2 or 3.
+    * @throws ContradictionException if inserting contradictory clauses in formula.
+    **/
+    @Override
+    public void addDetectorEvidence(int x, int y, int reading) throws ContradictionException {
+      agentX = x;
+      agentY = y;
+      switch (reading) {
+
+        case 0:
+          getSensorClauses0();
+          break;
+
+        case 1:
+          getSensorClauses1();
+          break;
+
+        case 2:
+          getSensorClauses2();
+          break;
+
+        case 3:
+          getSensorClauses3();
+          break;
+
+        default:
+          break;
+      }
+    }
+
+    /**
+    * Add denied clauses that are within the range of readings 1, 2 and 3
+    *
+    * @throws ContradictionException if inserting contradictory clauses in formula.
+    **/
+    private void getSensorClauses0() throws ContradictionException{
+        denySquare(2);
+    }
+
+    /**
+    * Add denied clauses that are within the range of the readings 1
+    *
+    * @throws ContradictionException if inserting contradictory clauses in formula.
+    **/
+    private void getSensorClauses1() throws ContradictionException{
+        // Tiles where the treasure is located: the agent position
+        denyOutsideSquare(0);
+    }
+
+    /**
+    * Add denied clauses that are within the range of the readings 2
+    *
+    * @throws ContradictionException if inserting contradictory clauses in formula.
+    **/
+    private void getSensorClauses2() throws ContradictionException {
+        // Tiles where the treasure is located: the 3x3 square around the
+        // agent, but not the agent position
+        denyOutsideSquare(1);
+        denySquare(0);
+    }
+
+    /**
+    * Add denied clauses that are within the range of the readings 3
+    *
+    * @throws ContradictionException if inserting contradictory clauses in formula.
+    **/
+    private void getSensorClauses3() throws ContradictionException {
+        // Tiles where the treasure is located: the 5x5 square around the
+        // agent, but not the 3x3 square around it
+        denyOutsideSquare(2);
+        denySquare(1);
+    }
+
+    /**
+    * Add denied clauses for the positions of the square of radius r centered
+    * at the agent position, clipped to the limits of the world
+    *
+    * @param r radius of the square
+    * @throws ContradictionException if inserting contradictory clauses in formula.
+    **/
+    private void denySquare(int r) throws ContradictionException {
+        int fromY = Math.max(1, agentY - r), toY = Math.min(WorldDim, agentY + r);
+        for (int x = Math.max(1, agentX - r); x <= Math.min(WorldDim, agentX + r); x++) {
+            denyRange(coordToLineal(x, fromY, 0), coordToLineal(x, toY, 0) + 1);
+        }
+    }
+
+    /**
+    * Add denied clauses for the positions outside the square of radius r
+    * centered at the agent position
+    *
+    * @param r radius of the square
+    * @throws ContradictionException if inserting contradictory clauses in formula.
+    **/
+    private void denyOutsideSquare(int r) throws ContradictionException {
+        int fromX = Math.max(1, agentX - r), toX = Math.min(WorldDim, agentX + r);
+        int fromY = Math.max(1, agentY - r), toY = Math.min(WorldDim, agentY + r);
+        if (fromX > toX || fromY > toY) {
+            denyRange(0, WorldLinealDim);
+            return;
+        }
+        denyRange(0, coordToLineal(fromX, 1, 0));
+        for (int x = fromX; x <= toX; x++) {
+            denyRange(coordToLineal(x, 1, 0), coordToLineal(x, fromY, 0));
+            denyRange(coordToLineal(x, toY, 0) + 1, coordToLineal(x, WorldDim, 0) + 1);
+        }
+        denyRange(coordToLineal(toX + 1, 1, 0), WorldLinealDim);
+    }
+
+    /**
+    * Limit the rows where the Treasure can be with the pirate answer. No
+    * clauses are added: the rows left out are removed from the candidates
+    * in the next inference, with applyRowBounds
+    *
+    * @param y     y coordinate of the agent position
+    * @param isUp  true if the pirate said the Treasure is up of the agent
+    * @throws ContradictionException if inserting contradictory clauses in formula.
+    **/
+    @Override
+    public void addPirateEvidence(int y, boolean isUp) throws ContradictionException
+    {
+        rows.addPirateAnswer(y, isUp);
+    }
+
+    /**
+    * Remove from the candidates the rows left out by the pirates since the
+    * last call, and mark them as whole rows in the state of the agent
+    *
+    * @param tfstate the state of knowledge of the agent, or null
+    **/
+    void applyRowBounds( TFState tfstate ) {
+        rows.apply(tfstate, candidates);
+    }
+
+    /**
+    * Add the unit clauses that say that the Treasure is NOT at the positions
+    * with lineal index in [from, to), using their future variables. Only the
+    * positions still possible are visited, and a clause is not added if it
+    * was already added before. The positions already inferred as NOT possible
+    * are skipped too, as their past variable is false, so the future one is
+    * false too.
+    *
+    * @param from first lineal index of the range
+    * @param to   lineal index after the last one of the range
+    * @throws ContradictionException if inserting contradictory clauses in formula.
+    **/
+    private void denyRange(int from, int to) throws ContradictionException {
+        int added = 0;
+        for (int lineal = candidates.nextSetBit(from); lineal >= 0 && lineal < to;
+                 lineal = candidates.nextSetBit(lineal + 1)) {
+            if (!denied.get(lineal)) {
+                denied.set(lineal);
+                unitClause.clear();
+                unitClause.push(-(lineal + TreasureFutureOffset));
+                solver.addClause(unitClause);
+                added++;
+            }
+        }
+        if (added > 0 && metrics.isEnabled()) {
+            metrics.clausesAdded(added);
+        }
+    }
+
+    /**
+    *  This function should add all the clauses stored in the list
+    *  futureToPast to the formula stored in solver.
+    *   Use the function addClause( VecInt ) to add each clause to the solver
+    *
+    **/
+    public void addLastFutureClausesToPastClauses() throws ContradictionException
+    {
+      if (futureToPast != null) {
+			     for (VecInt vecInt : futureToPast) {
+				         solver.addClause(vecInt);
+			     }
+			     if (metrics.isEnabled()) {
+			         metrics.clausesAdded(futureToPast.size());
+			     }
+		  }
+    }
+
+    /**
+    * This function should check, using the future variables related
+    * to possible positions of Treasure, whether it is a logical consequence
+    * that Treasure is NOT at certain positions. This should be checked for all the
+    * positions of the Treasure World.
+    * The logical consequences obtained, should be then stored in the futureToPast list
+    * but using the variables corresponding to the "past" variables of the same positions
+    *
+    * Only the positions that are still in the candidates set are checked, as a
+    * position already inferred as NOT possible remains so in all the next steps.
+    * So, every new conclusion is marked in the state and added to futureToPast
+    * only once, in the step where it is obtained.
+    *
+    * When modelPruning is enabled, every position that is true in the model
+    * found for a satisfiable question is also known to be possible in this
+    * step, so it is not asked to the solver.
+    *
+    * @param tfstate the state of knowledge of the agent
+    * @return the number of positions where the Treasure can still be
+    **/
+    @Override
+    public int performInferenceQuestions( TFState tfstate ) throws
+            ContradictionException, TimeoutException
+    {
+        applyRowBounds(tfstate);
+        addConclusions(findImpossiblePositions(0, WorldLinealDim), tfstate);
+        if (metrics.isEnabled()) {
+            metrics.solverSize(solver.nVars(), solver.nConstraints());
+        }
+        return candidates.cardinality();
+    }
+
+    /**
+    * Check with the solver the positions still possible whose lineal index
+    * is in the range [from, to), and return the ones where the Treasure can
+    * NOT be. The knowledge of the engine is not changed.
+    *
+    * @param from first lineal index of the range
+    * @param to   lineal index after the last one of the range
+    * @return the set of positions of the range that are NOT possible
+    * @throws TimeoutException if the solver does not answer in time
+    **/
+    BitSet findImpossiblePositions( int from, int to ) throws TimeoutException
+    {
+        BitSet impossible = new BitSet(WorldLinealDim);
+        BitSet knownPossible = modelPruning ? new BitSet(WorldLinealDim) : null;
+        for (int lineal = candidates.nextSetBit(from); lineal >= 0 && lineal < to;
+                 lineal = candidates.nextSetBit(lineal + 1)) {
+            if (knownPossible != null && knownPossible.get(lineal)) {
+                continue;
+            }
+            // Check if Gamma + variablePositive is unsatisfiable:
+            if (!isPossible(lineal)) {
+                impossible.set(lineal);
+            } else if (knownPossible != null) {
+                addPossiblePositionsFromModel(knownPossible);
+            }
+        }
+        return impossible;
+    }
+
+    /**
+    * Add to the knowledge of the engine the positions found as NOT possible,
+    * and mark them in the state of the agent. Every conclusion is stored,
+    * unless the position was already denied, in the futureToPast list using
+    * the past variable of the position. This list is started again, as it
+    * only keeps the conclusions of the last step.
+    *
+    * @param impossible set of positions where the Treasure can NOT be
+    * @param tfstate    the state of knowledge of the agent, or null to not
+    *                   mark the positions in any state
+    **/
+    void addConclusions( BitSet impossible, TFState tfstate )
+    {
+        futureToPast = new ArrayList<>();
+        for (int lineal = impossible.nextSetBit(0); lineal >= 0;
+                 lineal = impossible.nextSetBit(lineal + 1)) {
+            candidates.clear(lineal);
+            if (tfstate != null) {
+                tfstate.set(lineal % WorldDim + 1, lineal / WorldDim + 1, "X");
+            }
+            if (!denied.get(lineal)) {
+                VecInt pastClause = new VecInt();
+                pastClause.insertFirst(-(lineal + TreasurePastOffset));
+                futureToPast.add(pastClause);
+            }
+        }
+    }
+
+    /**
+    * Check with the solver whether Gamma is satisfiable when the Treasure is
+    * at the position given
+    *
+    * @param lineal lineal index of the position
+    * @return true if the Treasure can be at the position
+    * @throws TimeoutException if the solver does not answer in time
+    **/
+    private boolean isPossible( int lineal ) throws TimeoutException {
+        // Get variable number for position x,y in future variables
+        int literal = lineal + TreasureFutureOffset;
+        question.clear();
+        question.push(literal);
+        boolean sat = solver.isSatisfiable(question);
+        if (metrics.isEnabled()) {
+            metrics.satCall(sat);
+        }
+        return sat;
+    }
+
+    /**
+    * Mark as possible all the positions whose future Treasure variable is
+    * true in the last model found by the solver
+    *
+    * @param knownPossible set of positions known to be possible in this step
+    **/
+    private void addPossiblePositionsFromModel( BitSet knownPossible ) {
+        int[] model = solver.model();
+        for (int i = 0; i < model.length; i++) {
+            int lineal = model[i] - TreasureFutureOffset;
+            if (lineal >= 0 && lineal < WorldLinealDim) {
+                knownPossible.set(lineal);
+            }
+        }
+    }
+
+    /**
+    * This function builds the initial logical formula of the agent and stores it
+    * into the solver object.
+    *
+    *  @return returns the solver object where the formula has been stored
+    **/
+    public ISolver buildGamma() throws UnsupportedEncodingException,
+            FileNotFoundException, IOException, ContradictionException
+    {
+        int totalNumVariables;
+
+        // You must set this variable to the total number of boolean variables
+        // in your formula Gamma
+        // The model found by the solver only has the variables declared,
+        // so the future variables must be declared too for model pruning
+        totalNumVariables = singleVariableSet ? WorldLinealDim : 2 * WorldLinealDim;
+        solver = SolverFactory.newDefault();
+        solver.setTimeout(3600);
+        solver.newVar(totalNumVariables);
+        // This variable is used to generate, in a particular sequential order,
+        // the variable indentifiers of all the variables
+        actualLiteral = 1;
+
+        // call here functions to add the different sets of clauses
+        // of Gamma to the solver object
+        if (singleVariableSet) {
+            futureTreasure(); // Treasure, from 1,1 to n,n (1 clause)
+            // The conclusions of a step are added with the same variables,
+            // as a position NOT possible remains so in all the next steps
+            TreasurePastOffset = TreasureFutureOffset;
+            return solver;
+        }
+        pastTreasure(); // Treasure t-1, from 1,1 to n,n (1 clause)
+		    futureTreasure(); // Treasure t+1, from 1,1 to n,n (1 clause)
+		    pastTreasureToFutureTreasure(); // Treasure t-1 -> Treasure t+1 (nxn clauses)
+
+        return solver;
+    }
+
+    /**
+	 * Adds the clause that says that the treasure must be in some position
+	 * with respect to the variables that talk about past positions.
+	 *
+	 * @throws ContradictionException if inserting contradictory clauses in formula (solver).
+	 **/
+  	private void pastTreasure() throws ContradictionException {
+  		TreasurePastOffset = actualLiteral;
+  		VecInt pastClause = new VecInt();
+  		for (int i = 0; i < WorldLinealDim; i++) {
+  			pastClause.insertFirst(actualLiteral);
+  			actualLiteral++;
+  		}
+  		solver.addClause(pastClause);
+  	}
+
+    /**
+  	 * Adds the clause that says that the treasure must be in some position
+  	 * with respect to the variables that talk about past positions.
+  	 *
+  	 * @throws ContradictionException if inserting contradictory clauses in formula (solver).
+  	 **/
+    	private void futureTreasure() throws ContradictionException {
+    		TreasureFutureOffset = actualLiteral;
+    		VecInt futureClause = new VecInt();
+    		for (int i = 0; i < WorldLinealDim; i++) {
+    			futureClause.insertFirst(actualLiteral);
+    			actualLiteral++;
+    		}
+    		solver.addClause(futureClause);
+    	}
+
+      /**
+  	 * Adds the clauses that say that if in the past we reached the conclusion
+  	 * that Treasure cannot be in a position (x,y), then this should be also true
+  	 * in the future.
+  	 *
+  	 * @throws ContradictionException if inserting contradictory clauses in formula (solver).
+  	 **/
+    	private void pastTreasureToFutureTreasure() throws ContradictionException {
+    		for (int i = 0; i < WorldLinealDim; i++) {
+    			VecInt clause = new VecInt();
+    			clause.insertFirst(i + 1);
+    			clause.insertFirst(-(i + TreasureFutureOffset));
+    			solver.addClause(clause);
+    		}
+    	}
+
+     /**
+     * Convert a coordinate pair (x,y) to the integer value  t_[x,y]
+     * of variable that stores that information in the formula, using
+     * offset as the initial index for that subset of position variables
+     * (past and future position variables have different variables, so different
+     * offset values)
+     *
+     *  @param x x coordinate of the position variable to encode
+     *  @param y y coordinate of the position variable to encode
+     *  @param offset initial value for the subset of position variables
+     *         (past or future subset)
+     *  @return the integer indentifer of the variable  b_[x,y] in the formula
+    **/
+    public int coordToLineal(int x, int y, int offset) {
+        return ((x - 1) * WorldDim) + (y - 1) + offset;
+    }
+
+    /**
+     * Perform the inverse computation to the previous function.
+     * That is, from the identifier t_[x,y] to the coordinates  (x,y)
+     *  that it represents
+     *
+     * @param lineal identifier of the variable
+     * @param offset offset associated with the subset of variables that
+     *        lineal belongs to
+     * @return array with x and y coordinates
+    **/
+    public int[] linealToCoord(int lineal, int offset)
+    {
+        lineal = lineal - offset + 1;
+        int[] coords = new int[2];
+        coords[1] = ((lineal-1) % WorldDim) + 1;
+        coords[0] = (lineal - 1) / WorldDim + 1;
+        return coords;
+    }
+
+}
@@ -0,0 +1,405 @@
+package apryraz.tworld;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+
+/**
+*  Binary scenario file, with all the description of a run of the agent:
+*  the world, the Treasure position, the pirates, the steps and, optionally,
+*  the expected states after each step. All the numbers are big endian:
+*
+*    header:  magic "TWSC", version, dimension, Treasure x, Treasure y,
+*             number of pirates, number of steps, number of states (int each)
+*    pirates: x, y (int each) for each pirate
+*    steps:   x, y (int each) for each step
+*    states:  the bitset of each TFState, as (dim^2 + 63) / 64 longs
+*
+*  The file is read by mapping it in memory, so opening it does not depend
+*  on its size: the lists of pirates and steps are views of the mapped file.
+**/
+public class ScenarioFile implements Closeable {
+
+  static final int MAGIC = 0x54575343;
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 32;
+
+  RandomAccessFile file;
+  int WorldDim, TreasureX, TreasureY, numPirates, numSteps, numStates;
+  MappedPositions pirates, steps;
+  LongBuffer states;
+
+
+  private ScenarioFile( String fileName ) throws IOException {
+    file = new RandomAccessFile(fileName, "r");
+    try {
+      mapSections(fileName, file.getChannel());
+    } catch (IOException ex) {
+      file.close();
+      throw ex;
+    }
+  }
+
+  private void mapSections( String fileName, FileChannel channel ) throws IOException {
+    IntBuffer header = map(channel, 0, HEADER_SIZE).asIntBuffer();
+    if (header.get(0) != MAGIC || header.get(1) != VERSION) {
+      throw new IOException("Not a scenario file: " + fileName);
+    }
+    WorldDim = header.get(2);
+    TreasureX = header.get(3);
+    TreasureY = header.get(4);
+    numPirates = header.get(5);
+    numSteps = header.get(6);
+    numStates = header.get(7);
+
+    long offset = HEADER_SIZE;
+    pirates = new MappedPositions(map(channel, offset, 8L * numPirates).asIntBuffer(), numPirates);
+    offset += 8L * numPirates;
+    steps = new MappedPositions(map(channel, offset, 8L * numSteps).asIntBuffer(), numSteps);
+    offset += 8L * numSteps;
+    states = map(channel, offset, 8L * stateWords() * numStates).asLongBuffer();
+  }
+
+ /**
+ *  Open a scenario file
+ *
+ *  @param fileName the name of the file
+ *  @return the scenario of the file
+ *  @throws IOException if the file can not be read, or it is not a scenario
+ **/
+  public static ScenarioFile open( String fileName ) throws IOException {
+    return new ScenarioFile(fileName);
+  }
+
+  public int getDim() {
+    return WorldDim;
+  }
+
+  public int getTreasureX() {
+    return TreasureX;
+  }
+
+  public int getTreasureY() {
+    return TreasureY;
+  }
+
+ /**
+ *  Returns the pirates of the scenario, as a view of the mapped file
+ *
+ *  @return the list of pirates locations
+ **/
+  public List<Position> getPirates() {
+    return pirates;
+  }
+
+ /**
+ *  Returns the steps of the scenario, as a view of the mapped file
+ *
+ *  @return the sequence of steps of the agent
+ **/
+  public List<Position> getSteps() {
+    return steps;
+  }
+
+  public int getNumStates() {
+    return numStates;
+  }
+
+ /**
+ *  Returns the expected state after a step
+ *
+ *  @param step index of the step, from 0
+ *  @return a new TFState with the state expected after the step
+ **/
+  public TFState getState( int step ) {
+    if (step < 0 || step >= numStates) {
+      throw new IndexOutOfBoundsException("State: " + step + ", States: " + numStates);
+    }
+    TFState state = new TFState(WorldDim);
+    LongBuffer words = states.duplicate();
+    words.position(step * state.words.length);
+    words.get(state.words);
+    return state;
+  }
+
+  /**
+  *  Compare the expected state after a step with a state, reading the words
+  *  of the expected state directly from the mapped file, and stopping at the
+  *  first different word
+  *
+  *  @param step index of the step, from 0
+  *  @param state the state to compare, of the same dimension
+  *  @return index (i-1) * dim + (j-1) of the first different position of
+  *          the state, or -1 if both states are equal
+  **/
+  public int firstDifference( int step, TFState state ) {
+    if (step < 0 || step >= numStates) {
+      throw new IndexOutOfBoundsException("State: " + step + ", States: " + numStates);
+    }
+    long[] words = state.words;
+    int base = step * words.length;
+    for (int w = 0; w < words.length; w++) {
+      long diff = states.get(base + w) ^ words[w];
+      if (diff != 0) {
+        return (w << 6) + Long.numberOfTrailingZeros(diff);
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public void close() throws IOException {
+    file.close();
+  }
+
+ /**
+ *  Write a scenario file
+ *
+ *  @param fileName the name of the file
+ *  @param dim dimension of the world
+ *  @param tx  X position of Treasure
+ *  @param ty  Y position of Treasure
+ *  @param pirates list of pirates locations
+ *  @param steps sequence of steps of the agent
+ *  @param expectedStates states expected after each step, or null
+ *  @throws IOException if the file can not be written
+ **/
+  public static void write( String fileName, int dim, int tx, int ty, List<Position> pirates,
+                            List<Position> steps, List<TFState> expectedStates ) throws IOException {
+    int numStates = expectedStates == null ? 0 : expectedStates.size();
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16));
+    try {
+      writeHeader(out, dim, tx, ty, pirates.size(), steps.size(), numStates);
+      writePositions(out, pirates);
+      writePositions(out, steps);
+      for (int s = 0; s < numStates; s++) {
+        writeState(out, expectedStates.get(s));
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+ /**
+ *  Convert a scenario given by text files to a scenario file. The steps
+ *  and the states are copied as they are read, so the text files are not
+ *  loaded in memory.
+ *
+ *  @param fileName the name of the scenario file to write
+ *  @param dim dimension of the world
+ *  @param tx  X position of Treasure
+ *  @param ty  Y position of Treasure
+ *  @param numSteps maximum number of steps to copy
+ *  @param stepsFile file with the sequence of steps
+ *  @param piratesFile file with the list of pirate positions
+ *  @param statesFile file with the states expected after each step, as
+ *         read by the tests, or null
+ *  @throws IOException if the files can not be read or written
+ **/
+  public static void convert( String fileName, int dim, int tx, int ty, int numSteps,
+                              String stepsFile, String piratesFile, String statesFile ) throws IOException {
+    int copiedPirates = 0, copiedSteps = 0, copiedStates = 0;
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16));
+    try {
+      writeHeader(out, dim, tx, ty, 0, 0, 0);
+      PositionReader reader = PositionReader.open(piratesFile);
+      try {
+        while (reader.next()) {
+          out.writeInt(reader.getX());
+          out.writeInt(reader.getY());
+          copiedPirates++;
+        }
+      } finally {
+        reader.close();
+      }
+      reader = PositionReader.open(stepsFile);
+      try {
+        while (copiedSteps < numSteps && reader.next()) {
+          out.writeInt(reader.getX());
+          out.writeInt(reader.getY());
+          copiedSteps++;
+        }
+      } finally {
+        reader.close();
+      }
+      if (statesFile != null) {
+        BufferedReader br = new BufferedReader(new FileReader(statesFile));
+        try {
+          TFState state;
+          while (copiedStates < copiedSteps && (state = readState(br, dim)) != null) {
+            writeState(out, state);
+            copiedStates++;
+          }
+        } finally {
+          br.close();
+        }
+      }
+    } finally {
+      out.close();
+    }
+
+    // Write the number of pirates, steps and states in the header
+    RandomAccessFile header = new RandomAccessFile(fileName, "rw");
+    try {
+      header.seek(20);
+      header.writeInt(copiedPirates);
+      header.writeInt(copiedSteps);
+      header.writeInt(copiedStates);
+    } finally {
+      header.close();
+    }
+  }
+
+ /**
+ *  Read a state in the text format of the states files: one line for each
+ *  row, from row dim down to row 1, and a blank line after the state
+ *
+ *  @param br reader of the states file
+ *  @param dim dimension of the world
+ *  @return the state read, or null at the end of the file
+ *  @throws IOException if the state can not be read
+ **/
+  public static TFState readState( BufferedReader br, int dim ) throws IOException {
+    TFState state = new TFState(dim);
+    for (int i = dim; i >= 1; i--) {
+      String row = br.readLine();
+      if (row == null) {
+        if (i == dim) {
+          return null;
+        }
+        throw new IOException("Incomplete state in states file");
+      }
+      String[] values = row.trim().split("\\s+");
+      for (int j = 1; j <= dim; j++) {
+        state.set(i, j, values[j - 1]);
+      }
+    }
+    // Blank line between states
+    br.readLine();
+    return state;
+  }
+
+ /**
+ *  Write a state in the text format of the states files, as read by
+ *  readState
+ *
+ *  @param out writer of the states file
+ *  @param state the state to write
+ *  @throws IOException if the state can not be written
+ **/
+  public static void writeState( Writer out, TFState state ) throws IOException {
+    int dim = state.getDim();
+    char[] row = new char[2 * dim];
+    for (int i = dim; i >= 1; i--) {
+      for (int j = 1; j <= dim; j++) {
+        row[2 * (j - 1)] = state.isCandidate(i, j) ? '?' : 'X';
+        row[2 * j - 1] = ' ';
+      }
+      out.write(row, 0, 2 * dim - 1);
+      out.write('\n');
+    }
+    // Blank line between states
+    out.write('\n');
+  }
+
+  private static void writeHeader( DataOutputStream out, int dim, int tx, int ty, int numPirates,
+                                   int numSteps, int numStates ) throws IOException {
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(dim);
+    out.writeInt(tx);
+    out.writeInt(ty);
+    out.writeInt(numPirates);
+    out.writeInt(numSteps);
+    out.writeInt(numStates);
+  }
+
+  private static void writePositions( DataOutputStream out, List<Position> positions ) throws IOException {
+    for (int i = 0; i < positions.size(); i++) {
+      Position position = positions.get(i);
+      out.writeInt(position.x);
+      out.writeInt(position.y);
+    }
+  }
+
+  private static void writeState( DataOutputStream out, TFState state ) throws IOException {
+    for (long word : state.words) {
+      out.writeLong(word);
+    }
+  }
+
+  private int stateWords() {
+    return (int) (((long) WorldDim * WorldDim + 63) >>> 6);
+  }
+
+  private static MappedByteBuffer map( FileChannel channel, long offset, long size ) throws IOException {
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("Scenario section too large to map: " + size + " bytes");
+    }
+    if (offset + size > channel.size()) {
+      throw new IOException("Truncated scenario file");
+    }
+    return channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+  }
+
+ /**
+ *  List of positions that is a view of a section of the mapped file
+ **/
+  static class MappedPositions extends AbstractList<Position> implements RandomAccess {
+    IntBuffer coords;
+    int size;
+
+    MappedPositions( IntBuffer buffer, int numPositions ) {
+      coords = buffer;
+      size = numPositions;
+    }
+
+    @Override
+    public Position get( int index ) {
+      if (index < 0 || index >= size) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+      }
+      return new Position(coords.get(2 * index), coords.get(2 * index + 1));
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+
+  /**
+  *  Convert a scenario given by text files to a scenario file, with arguments:
+  *  arg[0] = name of the scenario file to write
+  *  arg[1] = dimension of the word
+  *  arg[2] = x coordinate of treasure position
+  *  arg[3] = y coordinate of treasure position
+  *  arg[4] = num of steps to copy
+  *  arg[5] = file name with sequence of steps
+  *  arg[6] = file name with list of pirate positions
+  *  arg[7] = (optional) file name with the expected states
+  **/
+  public static void main( String[] args ) throws IOException {
+    if (args == null || args.length < 7) {
+      System.out.println("Error: Not enough arguments given");
+      return;
+    }
+    convert(args[0], Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]),
+            Integer.parseInt(args[4]), args[5], args[6], args.length > 7 ? args[7] : null);
+  }
+
+}
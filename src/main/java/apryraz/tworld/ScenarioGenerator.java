@@ -0,0 +1,396 @@
+package apryraz.tworld;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.TimeoutException;
+
+
+/**
+*  Generator of reproducible scenarios of any size: the same seed and
+*  parameters always give the same Treasure position, pirates and steps.
+*
+*  The scenarios can be written in the text formats of the files of the
+*  tests, together with the expected states after each step, obtained by
+*  running an agent in a TreasureWorldEnv.
+**/
+public class ScenarioGenerator {
+
+  /**
+  *  Shape of the sequence of steps of the agent
+  **/
+  public enum Walk {
+    /** Random moves to one of the 4 neighbour positions **/
+    RANDOM,
+    /** Spiral from the center of the world to its borders **/
+    SPIRAL,
+    /** Rows from bottom to top, alternating left to right and right to left **/
+    BOUSTROPHEDON
+  }
+
+  /**
+  *  Distribution of the pirates in the world
+  **/
+  public enum PirateLayout {
+    /** Every position has the same probability **/
+    UNIFORM,
+    /** Pirates grouped around some random centers **/
+    CLUSTERED
+  }
+
+  int WorldDim;
+  long seed;
+/**
+*  Treasure position, or 0 to choose it at random
+**/
+  int TreasureX, TreasureY;
+  double pirateDensity;
+  PirateLayout layout = PirateLayout.UNIFORM;
+  Walk walk = Walk.RANDOM;
+/**
+*  Distance between two consecutive steps of the walk, and between two
+*  rows or rings of the boustrophedon and spiral walks
+**/
+  int stride = 1;
+
+
+ /**
+ *  Class constructor, for scenarios with no pirates and a random walk
+ *
+ *  @param dim dimension of the world
+ *  @param seed seed of the random numbers
+ **/
+  public ScenarioGenerator( int dim, long seed ) {
+    if (dim < 1) {
+      throw new IllegalArgumentException("Dimension must be at least 1: " + dim);
+    }
+    WorldDim = dim;
+    this.seed = seed;
+  }
+
+ /**
+ *  Set the Treasure position
+ *
+ *  @param x  X position of Treasure, or 0 to choose it at random
+ *  @param y  Y position of Treasure, or 0 to choose it at random
+ **/
+  public void setTreasure( int x, int y ) {
+    if (x < 0 || x > WorldDim || y < 0 || y > WorldDim) {
+      throw new IllegalArgumentException("Treasure out of the world: " + x + "," + y);
+    }
+    TreasureX = x;
+    TreasureY = y;
+  }
+
+ /**
+ *  Set the pirates of the scenarios
+ *
+ *  @param density fraction of the positions of the world with a pirate
+ *  @param pirateLayout distribution of the pirates
+ **/
+  public void setPirates( double density, PirateLayout pirateLayout ) {
+    if (density < 0 || density > 1) {
+      throw new IllegalArgumentException("Pirate density must be between 0 and 1: " + density);
+    }
+    pirateDensity = density;
+    layout = pirateLayout;
+  }
+
+ /**
+ *  Set the shape of the sequence of steps
+ *
+ *  @param shape shape of the walk
+ *  @param walkStride distance between consecutive steps, rows or rings
+ **/
+  public void setWalk( Walk shape, int walkStride ) {
+    if (walkStride < 1) {
+      throw new IllegalArgumentException("Stride must be at least 1: " + walkStride);
+    }
+    walk = shape;
+    stride = walkStride;
+  }
+
+ /**
+ *  Generate a scenario. The Treasure, the pirates and the steps are always
+ *  generated in that order from a new generator of random numbers with the
+ *  seed, so generating again gives the same scenario.
+ *
+ *  @param name name of the scenario
+ *  @param numSteps number of steps of the scenario
+ *  @return the scenario
+ **/
+  public SimulationScenario generate( String name, int numSteps ) {
+    Random random = new Random(seed);
+    int tx = TreasureX == 0 ? 1 + random.nextInt(WorldDim) : TreasureX;
+    int ty = TreasureY == 0 ? 1 + random.nextInt(WorldDim) : TreasureY;
+    PositionList pirates = generatePirates(random);
+    PositionList steps = generateSteps(random, numSteps);
+    return new SimulationScenario(name, WorldDim, tx, ty, numSteps, steps, pirates);
+  }
+
+  PositionList generatePirates( Random random ) {
+    int cells = WorldDim * WorldDim;
+    int numPirates = (int) Math.round(pirateDensity * cells);
+    PositionList pirates = new PositionList(numPirates);
+    if (numPirates == 0) {
+      return pirates;
+    }
+    // Positions with a pirate, with index (x-1) * WorldDim + (y-1)
+    BitSet chosen = new BitSet(cells);
+    if (layout == PirateLayout.UNIFORM && numPirates > cells / 2) {
+      // Choose the positions without pirates, so there are few repeated draws
+      int free = cells - numPirates;
+      for (int n = 0; n < free; ) {
+        int index = random.nextInt(cells);
+        if (!chosen.get(index)) {
+          chosen.set(index);
+          n++;
+        }
+      }
+      chosen.flip(0, cells);
+    } else if (layout == PirateLayout.UNIFORM) {
+      for (int n = 0; n < numPirates; ) {
+        int index = random.nextInt(cells);
+        if (!chosen.get(index)) {
+          chosen.set(index);
+          n++;
+        }
+      }
+    } else {
+      clusterPirates(random, chosen, numPirates);
+    }
+    for (int index = chosen.nextSetBit(0); index >= 0; index = chosen.nextSetBit(index + 1)) {
+      pirates.add(index / WorldDim + 1, index % WorldDim + 1);
+    }
+    return pirates;
+  }
+
+  private void clusterPirates( Random random, BitSet chosen, int numPirates ) {
+    int cells = WorldDim * WorldDim;
+    int numCenters = Math.max(1, numPirates / 64);
+    int[] centers = new int[numCenters];
+    for (int c = 0; c < numCenters; c++) {
+      centers[c] = random.nextInt(cells);
+    }
+    double spread = Math.max(1.0, WorldDim / 32.0);
+    int n = 0;
+    // Crowded clusters can have no free positions near them, so after too
+    // many repeated draws the rest of the pirates are placed at random
+    for (long attempts = 4L * numPirates; n < numPirates && attempts > 0; attempts--) {
+      int center = centers[random.nextInt(numCenters)];
+      int x = clamp(center / WorldDim + 1 + (int) Math.round(random.nextGaussian() * spread));
+      int y = clamp(center % WorldDim + 1 + (int) Math.round(random.nextGaussian() * spread));
+      int index = (x - 1) * WorldDim + (y - 1);
+      if (!chosen.get(index)) {
+        chosen.set(index);
+        n++;
+      }
+    }
+    for (int index = chosen.nextClearBit(0); n < numPirates; index = chosen.nextClearBit(index + 1)) {
+      chosen.set(index);
+      n++;
+    }
+  }
+
+  PositionList generateSteps( Random random, int numSteps ) {
+    PositionList steps = new PositionList(numSteps);
+    switch (walk) {
+      case RANDOM:
+        randomWalk(random, steps, numSteps);
+        break;
+      case SPIRAL:
+        while (steps.size() < numSteps) {
+          spiral(steps, numSteps);
+        }
+        break;
+      case BOUSTROPHEDON:
+        while (steps.size() < numSteps) {
+          boustrophedon(steps, numSteps);
+        }
+        break;
+    }
+    return steps;
+  }
+
+  private void randomWalk( Random random, PositionList steps, int numSteps ) {
+    int x = 1 + random.nextInt(WorldDim);
+    int y = 1 + random.nextInt(WorldDim);
+    for (int s = 0; s < numSteps; s++) {
+      steps.add(x, y);
+      int dx = 0, dy = 0;
+      switch (random.nextInt(4)) {
+        case 0: dx = stride; break;
+        case 1: dx = -stride; break;
+        case 2: dy = stride; break;
+        default: dy = -stride; break;
+      }
+      // Go the other way at the borders, and stay when the world is too small
+      if (x + dx < 1 || x + dx > WorldDim) {
+        dx = -dx;
+      }
+      if (y + dy < 1 || y + dy > WorldDim) {
+        dy = -dy;
+      }
+      if (x + dx >= 1 && x + dx <= WorldDim) {
+        x += dx;
+      }
+      if (y + dy >= 1 && y + dy <= WorldDim) {
+        y += dy;
+      }
+    }
+  }
+
+ /**
+ *  Add the positions of a spiral over the grid of lanes 1, 1 + stride, ...
+ *  from its center, until it covers the grid or there are numSteps steps
+ **/
+  private void spiral( PositionList steps, int numSteps ) {
+    int lanes = (WorldDim - 1) / stride + 1;
+    long covered = 0, total = (long) lanes * lanes;
+    int gx = (lanes - 1) / 2, gy = (lanes - 1) / 2;
+    int[] dxs = {1, 0, -1, 0};
+    int[] dys = {0, 1, 0, -1};
+    int dir = 0;
+    for (int leg = 1; covered < total && steps.size() < numSteps; leg++) {
+      // Two legs of each length: right 1, up 1, left 2, down 2, right 3...
+      for (int twice = 0; twice < 2 && covered < total && steps.size() < numSteps; twice++) {
+        for (int s = 0; s < leg && covered < total && steps.size() < numSteps; s++) {
+          if (gx >= 0 && gx < lanes && gy >= 0 && gy < lanes) {
+            steps.add(1 + gx * stride, 1 + gy * stride);
+            covered++;
+          }
+          gx += dxs[dir];
+          gy += dys[dir];
+        }
+        dir = (dir + 1) % 4;
+      }
+    }
+  }
+
+ /**
+ *  Add the positions of the rows 1, 1 + stride, ... of the grid of lanes,
+ *  alternating their direction, until there are numSteps steps
+ **/
+  private void boustrophedon( PositionList steps, int numSteps ) {
+    int lanes = (WorldDim - 1) / stride + 1;
+    for (int gy = 0; gy < lanes && steps.size() < numSteps; gy++) {
+      for (int k = 0; k < lanes && steps.size() < numSteps; k++) {
+        int gx = (gy % 2 == 0) ? k : lanes - 1 - k;
+        steps.add(1 + gx * stride, 1 + gy * stride);
+      }
+    }
+  }
+
+  private int clamp( int coord ) {
+    return Math.max(1, Math.min(WorldDim, coord));
+  }
+
+ /**
+ *  Write a list of positions in the text format of the steps and pirates
+ *  files: a single line with x,y pairs separated by spaces
+ *
+ *  @param fileName the name of the file
+ *  @param positions the positions to write
+ *  @throws IOException if the file can not be written
+ **/
+  public static void writePositions( String fileName, List<Position> positions ) throws IOException {
+    Writer out = new BufferedWriter(new FileWriter(fileName), 1 << 16);
+    try {
+      for (int i = 0; i < positions.size(); i++) {
+        Position position = positions.get(i);
+        if (i > 0) {
+          out.write(' ');
+        }
+        out.write(Integer.toString(position.x));
+        out.write(',');
+        out.write(Integer.toString(position.y));
+      }
+      out.write('\n');
+    } finally {
+      out.close();
+    }
+  }
+
+ /**
+ *  Write the states expected after each step of a scenario, in the text
+ *  format of the states files. They are the states of an agent running the
+ *  steps in a TreasureWorldEnv, written as the agent runs.
+ *
+ *  @param fileName the name of the states file
+ *  @param scenario the scenario
+ *  @param engines factory of the inference engine of the agent
+ *  @throws IOException if the file can not be written
+ *  @throws ContradictionException if the agent finds a contradiction
+ *  @throws TimeoutException if the solver of the agent times out
+ **/
+  public static void writeStates( String fileName, SimulationScenario scenario,
+                                  SimulationRunner.EngineFactory engines )
+          throws IOException, ContradictionException, TimeoutException {
+    int wDim = scenario.WorldDim;
+    TreasureWorldEnv env = new TreasureWorldEnv(wDim, scenario.TreasureX, scenario.TreasureY);
+    env.setListener(NullListener.INSTANCE);
+    env.setPiratesLocations(scenario.pirates);
+    TreasureFinder agent = new TreasureFinder(wDim, engines.newEngine(wDim), NullListener.INSTANCE);
+    agent.setEnvironment(env);
+    agent.setListOfSteps(scenario.steps);
+
+    Writer out = new BufferedWriter(new FileWriter(fileName), 1 << 16);
+    try {
+      for (int s = 0; s < scenario.numSteps; s++) {
+        agent.runNextStep();
+        ScenarioFile.writeState(out, agent.getState());
+      }
+    } finally {
+      out.close();
+      agent.close();
+    }
+  }
+
+  /**
+  *  Generate a scenario and write it in text files, with arguments:
+  *  arg[0] = dimension of the world
+  *  arg[1] = seed of the random numbers
+  *  arg[2] = x coordinate of treasure position, or 0 for a random one
+  *  arg[3] = y coordinate of treasure position, or 0 for a random one
+  *  arg[4] = pirate density, between 0 and 1
+  *  arg[5] = pirate layout: "uniform" or "clustered"
+  *  arg[6] = walk: "random", "spiral" or "boustrophedon"
+  *  arg[7] = stride of the walk
+  *  arg[8] = num of steps
+  *  arg[9] = prefix of the files: <prefix>steps.txt, <prefix>pirates.txt
+  *           and <prefix>states.txt
+  *  arg[10] = (optional) engine for the expected states: "sat",
+  *            "geometric" (default) or "none" to not write them
+  *
+  *  The Treasure position is shown on screen, as it is needed to run the
+  *  scenario.
+  **/
+  public static void main( String[] args ) throws IOException, ContradictionException, TimeoutException {
+    if (args == null || args.length < 10) {
+      System.out.println("Error: Not enough arguments given");
+      return;
+    }
+    ScenarioGenerator generator = new ScenarioGenerator(Integer.parseInt(args[0]), Long.parseLong(args[1]));
+    generator.setTreasure(Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+    generator.setPirates(Double.parseDouble(args[4]), PirateLayout.valueOf(args[5].toUpperCase()));
+    generator.setWalk(Walk.valueOf(args[6].toUpperCase()), Integer.parseInt(args[7]));
+    SimulationScenario scenario = generator.generate(args[9], Integer.parseInt(args[8]));
+
+    writePositions(args[9] + "steps.txt", scenario.steps);
+    writePositions(args[9] + "pirates.txt", scenario.pirates);
+    String engine = args.length > 10 ? args[10] : "geometric";
+    if (!engine.equals("none")) {
+      writeStates(args[9] + "states.txt", scenario,
+                  engine.equals("sat") ? SimulationRunner.SAT_ENGINES : SimulationRunner.GEOMETRIC_ENGINES);
+    }
+    System.out.println("Treasure: " + scenario.TreasureX + "," + scenario.TreasureY
+                       + " Pirates: " + scenario.pirates.size() + " Steps: " + scenario.steps.size());
+  }
+
+}
@@ -0,0 +1,74 @@
+package apryraz.tworld;
+
+/**
+*  Result of the run of an agent in a SimulationScenario
+**/
+public class SimulationResult {
+
+  SimulationScenario scenario;
+/**
+*  Steps performed, first step after which only one position was possible
+*  (or -1 if the Treasure was not located), and positions still possible at
+*  the end of the run
+**/
+  int stepsRun, stepsToLocate = -1, candidatesRemaining;
+/**
+*  Total time of the steps, in nanoseconds
+**/
+  long elapsedNanos;
+/**
+*  Error that stopped the run, or null if it finished
+**/
+  Throwable error;
+
+  SimulationResult( SimulationScenario scenario ) {
+    this.scenario = scenario;
+  }
+
+  public SimulationScenario getScenario() {
+    return scenario;
+  }
+
+  public int getStepsRun() {
+    return stepsRun;
+  }
+
+  public int getStepsToLocate() {
+    return stepsToLocate;
+  }
+
+  public boolean isLocated() {
+    return stepsToLocate >= 0;
+  }
+
+  public int getCandidatesRemaining() {
+    return candidatesRemaining;
+  }
+
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  /**
+  *  Returns the mean time of the steps of the run
+  *
+  *  @return time per step in nanoseconds, or 0 if no steps were run
+  **/
+  public double getNanosPerStep() {
+    return stepsRun == 0 ? 0 : (double) elapsedNanos / stepsRun;
+  }
+
+  public Throwable getError() {
+    return error;
+  }
+
+  public String toString() {
+    if (error != null) {
+      return scenario.getName() + " error: " + error;
+    }
+    return scenario.getName() + " steps: " + stepsRun + " located at step: " + stepsToLocate
+           + " candidates: " + candidatesRemaining
+           + " ns/step: " + Math.round(getNanosPerStep());
+  }
+
+}
@@ -0,0 +1,277 @@
+package apryraz.tworld;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+
+/**
+*  Runner of many independent agents, each one with its own environment, in
+*  a bounded pool of threads. Every scenario is run by a task that creates the
+*  agent and the environment, runs the steps and keeps only the result, so
+*  only one agent for each thread is in memory at the same time, and large
+*  sweeps of scenarios can be run in a single process.
+**/
+public class SimulationRunner {
+
+  /**
+  *  Factory of the inference engines of the agents
+  **/
+  public interface EngineFactory {
+    /**
+    *  Create the inference engine of a new agent
+    *
+    *  @param dim dimension of the world of the agent
+    *  @return a new inference engine
+    **/
+    InferenceEngine newEngine( int dim );
+  }
+
+  /**
+  *  Factory of SatInferenceEngine, the engine used by default
+  **/
+  public static final EngineFactory SAT_ENGINES = new EngineFactory() {
+    @Override
+    public InferenceEngine newEngine( int dim ) {
+      return new SatInferenceEngine(dim);
+    }
+  };
+
+  /**
+  *  Factory of GeometricInferenceEngine
+  **/
+  public static final EngineFactory GEOMETRIC_ENGINES = new EngineFactory() {
+    @Override
+    public InferenceEngine newEngine( int dim ) {
+      return new GeometricInferenceEngine(dim);
+    }
+  };
+
+  ExecutorService executor;
+  EngineFactory engines;
+  boolean stopWhenLocated;
+
+
+ /**
+ *  Class constructor, for agents with SatInferenceEngine
+ *
+ *  @param numThreads number of threads of the pool
+ **/
+  public SimulationRunner( int numThreads ) {
+    this(numThreads, SAT_ENGINES);
+  }
+
+ /**
+ *  Class constructor
+ *
+ *  @param numThreads number of threads of the pool
+ *  @param engineFactory factory of the inference engines of the agents
+ **/
+  public SimulationRunner( int numThreads, EngineFactory engineFactory ) {
+    if (numThreads < 1) {
+      throw new IllegalArgumentException("Number of threads must be at least 1: " + numThreads);
+    }
+    engines = engineFactory;
+    executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+      @Override
+      public Thread newThread( Runnable r ) {
+        Thread thread = new Thread(r, "tworld-simulation");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+ /**
+ *  Set whether the agents stop as soon as the Treasure is located, instead
+ *  of performing all the steps of their scenarios
+ *
+ *  @param stop true to stop when the Treasure is located
+ **/
+  public void setStopWhenLocated( boolean stop ) {
+    stopWhenLocated = stop;
+  }
+
+ /**
+ *  Run all the scenarios, and wait for all of them to finish. An error in
+ *  a scenario does not stop the rest, and it is kept in its result.
+ *
+ *  @param scenarios the scenarios to run
+ *  @return the results, in the same order as the scenarios
+ *  @throws InterruptedException if interrupted while waiting
+ **/
+  public List<SimulationResult> run( List<SimulationScenario> scenarios ) throws InterruptedException {
+    List<Callable<SimulationResult>> tasks = new ArrayList<Callable<SimulationResult>>(scenarios.size());
+    for (final SimulationScenario scenario : scenarios) {
+      tasks.add(new Callable<SimulationResult>() {
+        @Override
+        public SimulationResult call() {
+          return runScenario(scenario);
+        }
+      });
+    }
+    List<SimulationResult> results = new ArrayList<SimulationResult>(scenarios.size());
+    for (Future<SimulationResult> future : executor.invokeAll(tasks)) {
+      try {
+        results.add(future.get());
+      } catch (ExecutionException ex) {
+        // runScenario keeps the errors in the result
+        throw new IllegalStateException(ex.getCause());
+      }
+    }
+    return results;
+  }
+
+ /**
+ *  Run a scenario in the current thread
+ *
+ *  @param scenario the scenario to run
+ *  @return the result of the run
+ **/
+  public SimulationResult runScenario( SimulationScenario scenario ) {
+    final SimulationResult result = new SimulationResult(scenario);
+    TreasureWorldListener recorder = new NullListener() {
+      @Override
+      public void stepFinished( int step, TFState state ) {
+        result.stepsRun++;
+      }
+    };
+    try {
+      TreasureWorldEnv env = new TreasureWorldEnv(scenario.WorldDim, scenario.TreasureX, scenario.TreasureY);
+      env.setListener(NullListener.INSTANCE);
+      env.setPiratesLocations(scenario.pirates);
+      TreasureFinder agent = new TreasureFinder(scenario.WorldDim,
+              engines.newEngine(scenario.WorldDim), recorder);
+      try {
+        agent.setEnvironment(env);
+        agent.setListOfSteps(scenario.steps);
+
+        long start = System.nanoTime();
+        if (stopWhenLocated) {
+          agent.runUntilLocated(scenario.numSteps);
+        } else {
+          agent.runSteps(scenario.numSteps);
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        result.candidatesRemaining = agent.getNumPossible();
+        if (agent.isTreasureLocated()) {
+          result.stepsToLocate = agent.getLocatedAtStep();
+        }
+      } finally {
+        agent.close();
+      }
+    } catch (Exception ex) {
+      result.error = ex;
+    }
+    return result;
+  }
+
+ /**
+ *  Stop the threads of the runner. The runner can not be used after that.
+ **/
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+ /**
+ *  Aggregate the results of a sweep in a text summary: number of runs,
+ *  errors and Treasures located, and the mean of steps to locate, time per
+ *  step and positions still possible at the end
+ *
+ *  @param results results of the runs
+ *  @return the summary
+ **/
+  public static String summarize( List<SimulationResult> results ) {
+    int runs = 0, errors = 0, located = 0;
+    long stepsToLocate = 0, candidates = 0, steps = 0, nanos = 0;
+    for (SimulationResult result : results) {
+      if (result.getError() != null) {
+        errors++;
+        continue;
+      }
+      runs++;
+      steps += result.getStepsRun();
+      nanos += result.getElapsedNanos();
+      candidates += result.getCandidatesRemaining();
+      if (result.isLocated()) {
+        located++;
+        stepsToLocate += result.getStepsToLocate();
+      }
+    }
+    return "runs: " + runs + " errors: " + errors + " located: " + located
+           + " mean steps to locate: " + (located == 0 ? "-" : String.format("%.2f", (double) stepsToLocate / located))
+           + " mean candidates remaining: " + (runs == 0 ? "-" : String.format("%.2f", (double) candidates / runs))
+           + " mean ns/step: " + (steps == 0 ? "-" : Long.toString(nanos / steps));
+  }
+
+  /**
+  *  Run a sweep of scenarios with arguments:
+  *  arg[0] = number of threads
+  *  arg[1] = file with one scenario in each line, with the arguments of
+  *           TreasureWorld: dimension, x and y of the Treasure, number of
+  *           steps, file of steps and file of pirates
+  *  arg[2] = (optional) "stop" to stop each agent when the Treasure is located
+  *
+  *  The result of every scenario and the summary are shown on screen.
+  **/
+  public static void main( String[] args ) throws IOException, InterruptedException {
+    if (args == null || args.length < 2) {
+      System.out.println("Error: Not enough arguments given");
+      return;
+    }
+    // The steps and pirates of each file are loaded once, for all the scenarios
+    Map<String, List<Position>> files = new HashMap<String, List<Position>>();
+    List<SimulationScenario> scenarios = new ArrayList<SimulationScenario>();
+    BufferedReader br = new BufferedReader(new FileReader(args[1]));
+    try {
+      String line;
+      while ((line = br.readLine()) != null) {
+        line = line.trim();
+        if (line.isEmpty()) {
+          continue;
+        }
+        String[] fields = line.split("\\s+");
+        scenarios.add(new SimulationScenario(line, Integer.parseInt(fields[0]),
+                Integer.parseInt(fields[1]), Integer.parseInt(fields[2]), Integer.parseInt(fields[3]),
+                loadPositions(files, fields[4]), loadPositions(files, fields[5])));
+      }
+    } finally {
+      br.close();
+    }
+
+    SimulationRunner runner = new SimulationRunner(Integer.parseInt(args[0]));
+    runner.setStopWhenLocated(args.length > 2 && args[2].equals("stop"));
+    List<SimulationResult> results = runner.run(scenarios);
+    runner.shutdown();
+    for (SimulationResult result : results) {
+      System.out.println(result);
+    }
+    System.out.println(summarize(results));
+  }
+
+  private static List<Position> loadPositions( Map<String, List<Position>> files,
+                                               String fileName ) throws IOException {
+    List<Position> positions = files.get(fileName);
+    if (positions == null) {
+      PositionReader reader = PositionReader.open(fileName);
+      try {
+        positions = reader.readAll(Integer.MAX_VALUE);
+      } finally {
+        reader.close();
+      }
+      files.put(fileName, positions);
+    }
+    return positions;
+  }
+
+}
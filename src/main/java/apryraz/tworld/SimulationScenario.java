@@ -0,0 +1,69 @@
+package apryraz.tworld;
+
+import java.util.List;
+
+/**
+*  Description of a run of an agent in a Treasure World: the world, the
+*  Treasure position, the pirates and the sequence of steps of the agent.
+*
+*  The lists are not copied, so many scenarios of a sweep can share the same
+*  lists of steps and pirates. They must not be modified while running.
+**/
+public class SimulationScenario {
+
+  String name;
+  int WorldDim, TreasureX, TreasureY, numSteps;
+  List<Position> steps;
+  List<Position> pirates;
+
+ /**
+ *  Class constructor
+ *
+ *  @param name name of the scenario, to identify its result
+ *  @param dim dimension of the world
+ *  @param tx  X position of Treasure
+ *  @param ty  Y position of Treasure
+ *  @param numSteps number of steps to perform
+ *  @param steps sequence of steps of the agent
+ *  @param pirates list of pirates locations
+ **/
+  public SimulationScenario( String name, int dim, int tx, int ty, int numSteps,
+                             List<Position> steps, List<Position> pirates ) {
+    this.name = name;
+    WorldDim = dim;
+    TreasureX = tx;
+    TreasureY = ty;
+    this.numSteps = numSteps;
+    this.steps = steps;
+    this.pirates = pirates;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int getDim() {
+    return WorldDim;
+  }
+
+  public int getNumSteps() {
+    return numSteps;
+  }
+
+  public int getTreasureX() {
+    return TreasureX;
+  }
+
+  public int getTreasureY() {
+    return TreasureY;
+  }
+
+  public List<Position> getSteps() {
+    return steps;
+  }
+
+  public List<Position> getPirates() {
+    return pirates;
+  }
+
+}
@@ -0,0 +1,42 @@
+package apryraz.tworld;
+
+import java.io.PrintStream;
+
+/**
+*  Listener that only prints the state of the agent every period steps,
+*  and ignores all the other events.
+**/
+public class StateDumpListener extends NullListener {
+
+  /**
+  *  Number of steps between two printed states
+  **/
+  int period;
+  /**
+  *  Where the states are printed
+  **/
+  PrintStream out;
+
+  /**
+  *  Class constructor
+  *
+  *  @param period number of steps between two printed states
+  *  @param out    stream where the states are printed
+  **/
+  public StateDumpListener( int period, PrintStream out ) {
+    if (period < 1) {
+      throw new IllegalArgumentException("Period must be at least 1: " + period);
+    }
+    this.period = period;
+    this.out = out;
+  }
+
+  @Override
+  public void stepFinished( int step, TFState state ) {
+    if (step % period == 0) {
+      out.println("STEP " + step + " => " + state.countCandidates() + " possible positions");
+      state.printState(out);
+    }
+  }
+
+}
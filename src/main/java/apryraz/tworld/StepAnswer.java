@@ -0,0 +1,70 @@
+package apryraz.tworld;
+
+/**
+*  Answer of the environment to a batched step request: the result of the
+*  movement, the pirate found at the new position, the metal detector reading
+*  there and, only if there is a pirate, its answer. So a step of the agent
+*  needs a single request to the environment instead of up to three messages.
+*
+*  Answers are mutable, so the agent can reuse the same object in every step.
+**/
+public class StepAnswer {
+
+  /*
+  *  Position requested, and whether the agent could move there
+  */
+  int x, y;
+  boolean moved;
+  /*
+  *  1 if there is a pirate at (x,y), metal detector reading at (x,y), and
+  *  pirate answer: 1 if the Treasure is up of (x,y), 0 if not, or -1 if
+  *  there is no pirate to ask. Readings and answers are -1 if not moved.
+  */
+  int pirate, reading, treasureUp;
+
+ /**
+ *  Change all the fields of the answer
+ *
+ *  @param x  x coordinate of the position requested
+ *  @param y  y coordinate of the position requested
+ *  @param moved  true if the position is within the world
+ *  @param pirate  1 if there is a pirate at (x,y), 0 otherwise
+ *  @param reading  metal detector reading at (x,y), or -1
+ *  @param treasureUp  pirate answer (1 up, 0 down), or -1 if no pirate
+ *  @return this answer
+ **/
+  public StepAnswer set( int x, int y, boolean moved, int pirate, int reading, int treasureUp ) {
+    this.x = x;
+    this.y = y;
+    this.moved = moved;
+    this.pirate = pirate;
+    this.reading = reading;
+    this.treasureUp = treasureUp;
+    return this;
+  }
+
+  public int getX() {
+    return x;
+  }
+
+  public int getY() {
+    return y;
+  }
+
+  public boolean isMoved() {
+    return moved;
+  }
+
+  public int getPirate() {
+    return pirate;
+  }
+
+  public int getReading() {
+    return reading;
+  }
+
+  public int getTreasureUp() {
+    return treasureUp;
+  }
+
+}
@@ -1,58 +1,206 @@
 package apryraz.tworld;
 
+import java.util.Arrays;
+import java.io.PrintStream;
+
 public class TFState {
   /**
-
-
+  *  State of knowledge of the agent about every position of the world:
+  *  "?" if the Treasure can be there, or "X" if it can NOT be there.
+  *
+  *  The state is stored as a bitset, with one bit for every position
+  *  (set for "X"), so position (i,j) is bit (i-1) * wDim + (j-1)
   **/
 
   int wDim;
-  String [][] matrix;
+  long[] words;
 
   public TFState( int dim ) {
     wDim = dim;
-    matrix = new String[wDim][wDim];
+    words = new long[(int) (((long) wDim * wDim + 63) >>> 6)];
     initializeState();
   }
 
   public void initializeState()
   {
-      for (int i = 0; i < wDim; i++) {
-          for (int j = 0; j < wDim; j++) {
-              matrix[i][j] = "?";
-          }
-      }
+      Arrays.fill(words, 0L);
   }
 
   public void set( int i, int j, String val ) {
 
-         matrix[i-1][j-1] = val;
+         if (val.equals("X")) {
+           setImpossible(i, j);
+         } else if (val.equals("?")) {
+           int bit = bitIndex(i, j);
+           words[bit >>> 6] &= ~(1L << bit);
+         } else {
+           throw new IllegalArgumentException("Invalid state value: " + val);
+         }
   }
 
-  public boolean equals(Object obj){
-       TFState tfstate2 = (TFState) obj;
-       boolean status = true;
+  /**
+  *  Mark position (i,j) as NOT possible ("X")
+  *
+  *  @param i row of the position (1..wDim)
+  *  @param j column of the position (1..wDim)
+  **/
+  public void setImpossible( int i, int j ) {
+         int bit = bitIndex(i, j);
+         words[bit >>> 6] |= 1L << bit;
+  }
 
-       for (int i = 0; i < wDim; i++) {
-           for (int j = 0; j < wDim; j++) {
-               if (! matrix[i][j].equals( tfstate2.matrix[i][j]) )
-                 status = false;
-           }
-       }
+  /**
+  *  Mark all the positions of the rows from fromRow to toRow, both
+  *  included, as NOT possible ("X"). The rows are consecutive in the
+  *  bitset, so whole words are filled at once.
+  *
+  *  @param fromRow first row (1..wDim)
+  *  @param toRow last row (1..wDim)
+  **/
+  public void setImpossibleRows( int fromRow, int toRow ) {
+         if (fromRow > toRow) {
+             return;
+         }
+         int from = (fromRow - 1) * wDim, to = toRow * wDim;
+         int firstWord = from >>> 6, lastWord = (to - 1) >>> 6;
+         long firstMask = -1L << from, lastMask = -1L >>> -to;
+         if (firstWord == lastWord) {
+             words[firstWord] |= firstMask & lastMask;
+             return;
+         }
+         words[firstWord] |= firstMask;
+         Arrays.fill(words, firstWord + 1, lastWord, -1L);
+         words[lastWord] |= lastMask;
+  }
+
+  /**
+  *  Returns the value of position (i,j): "?" or "X"
+  *
+  *  @param i row of the position (1..wDim)
+  *  @param j column of the position (1..wDim)
+  *  @return the value of the position
+  **/
+  public String get( int i, int j ) {
+         return isCandidate(i, j) ? "?" : "X";
+  }
+
+  /**
+  *  Check whether the Treasure can be at position (i,j)
+  *
+  *  @param i row of the position (1..wDim)
+  *  @param j column of the position (1..wDim)
+  *  @return true if the position is "?"
+  **/
+  public boolean isCandidate( int i, int j ) {
+         int bit = bitIndex(i, j);
+         return (words[bit >>> 6] & (1L << bit)) == 0;
+  }
+
+  /**
+  *  Returns the dimension of the world of this state
+  *
+  *  @return the dimension of the world
+  **/
+  public int getDim() {
+         return wDim;
+  }
+
+  /**
+  *  Count the positions where the Treasure can be
+  *
+  *  @return the number of positions with "?"
+  **/
+  public int countCandidates() {
+         int impossible = 0;
+         for (int w = 0; w < words.length; w++) {
+             impossible += Long.bitCount(words[w]);
+         }
+         return wDim * wDim - impossible;
+  }
+
+  /**
+  *  Find the first position where the Treasure can be, starting at a given
+  *  index. Indexes are (i-1) * wDim + (j-1), so all the candidates can be
+  *  visited with:
+  *     for (int c = s.nextCandidate(0); c >= 0; c = s.nextCandidate(c + 1))
+  *
+  *  @param fromIndex index of the first position to check
+  *  @return index of the first position with "?" from fromIndex, or -1
+  **/
+  public int nextCandidate( int fromIndex ) {
+         int size = wDim * wDim;
+         if (fromIndex < 0 || fromIndex >= size) {
+             return -1;
+         }
+         int w = fromIndex >>> 6;
+         long free = ~words[w] & (-1L << fromIndex);
+         while (free == 0) {
+             if (++w == words.length) {
+                 return -1;
+             }
+             free = ~words[w];
+         }
+         int index = (w << 6) + Long.numberOfTrailingZeros(free);
+         return index < size ? index : -1;
+  }
+
+  /**
+  *  Find the first position where this state and another one differ,
+  *  comparing 64 positions at a time
+  *
+  *  @param other the state to compare with, of the same dimension
+  *  @return index (i-1) * wDim + (j-1) of the first different position,
+  *          or -1 if both states are equal
+  **/
+  public int firstDifference( TFState other ) {
+         for (int w = 0; w < words.length; w++) {
+             long diff = words[w] ^ other.words[w];
+             if (diff != 0) {
+                 return (w << 6) + Long.numberOfTrailingZeros(diff);
+             }
+         }
+         return -1;
+  }
 
-       return status;
+  public boolean equals(Object obj){
+       if (!(obj instanceof TFState)) {
+         return false;
+       }
+       TFState tfstate2 = (TFState) obj;
+       return wDim == tfstate2.wDim && firstDifference(tfstate2) < 0;
    }
 
+  public int hashCode() {
+       return 31 * wDim + Arrays.hashCode(words);
+  }
+
   public void printState()
   {
-      System.out.println("FINDER => Printing Treasure world matrix");
-      for (int i = wDim-1; i > -1; i--) {
-          System.out.print("\t#\t");
-          for (int j = 0; j < wDim; j++) {
-              System.out.print(matrix[i][j] + " ");
+      printState(System.out);
+  }
+
+  /**
+  *  Print the state to a given stream
+  *
+  *  @param out stream where the state is printed
+  **/
+  public void printState( PrintStream out )
+  {
+      out.println("FINDER => Printing Treasure world matrix");
+      StringBuilder row = new StringBuilder(2 * wDim + 8);
+      for (int i = wDim; i >= 1; i--) {
+          row.setLength(0);
+          row.append("\t#\t");
+          for (int j = 1; j <= wDim; j++) {
+              row.append(isCandidate(i, j) ? '?' : 'X').append(' ');
           }
-          System.out.println("\t#");
+          row.append("\t#");
+          out.println(row);
       }
   }
 
+  private int bitIndex( int i, int j ) {
+      return (i - 1) * wDim + (j - 1);
+  }
+
 }
@@ -0,0 +1,157 @@
+package apryraz.tworld;
+
+/**
+*  Message exchanged between agents and the World interface object, with
+*  the typed protocol: a message type and three int fields. Messages are
+*  mutable, so the agent can reuse the same objects for all the requests
+*  and answers, without creating or parsing Strings.
+*
+*  AMessage is the string form of the same messages, and this class converts
+*  from and to it.
+**/
+public class TMessage {
+
+  MessageType type;
+  /*
+  *  Fields of the message: position (x,y) for all the messages but VOIDMSG
+  *  and NOMESSAGE, and value for the answers that have one (pirate found,
+  *  detector reading, or pirate answer)
+  */
+  int x, y, value;
+
+ /**
+ *  Class constructor, for an empty message (VOIDMSG)
+ **/
+  public TMessage() {
+    type = MessageType.VOIDMSG;
+  }
+
+ /**
+ *  Class constructor
+ *
+ *  @param msgtype  message type
+ *  @param x  x coordinate of the position
+ *  @param y  y coordinate of the position
+ *  @param value  value of the answer, 0 if not used
+ **/
+  public TMessage( MessageType msgtype, int x, int y, int value ) {
+    set(msgtype, x, y, value);
+  }
+
+ /**
+ *  Change all the fields of the message
+ *
+ *  @param msgtype  message type
+ *  @param x  x coordinate of the position
+ *  @param y  y coordinate of the position
+ *  @param value  value of the answer, 0 if not used
+ *  @return this message
+ **/
+  public TMessage set( MessageType msgtype, int x, int y, int value ) {
+    this.type = msgtype;
+    this.x = x;
+    this.y = y;
+    this.value = value;
+    return this;
+  }
+
+  public MessageType getType() {
+    return type;
+  }
+
+  public int getX() {
+    return x;
+  }
+
+  public int getY() {
+    return y;
+  }
+
+  public int getValue() {
+    return value;
+  }
+
+ /**
+ *  Convert the message to its string form
+ *
+ *  @return a new AMessage with the same message
+ **/
+  public AMessage toAMessage() {
+    String sx = Integer.toString(x), sy = Integer.toString(y);
+    switch (type) {
+      case MOVETO:
+        return new AMessage("moveto", sx, sy, "");
+      case DETECTSAT:
+        return new AMessage("detectsat", sx, sy, "");
+      case TREASUREUP:
+        return new AMessage("treasureup", sx, sy, "");
+      case STEP:
+        return new AMessage("step", sx, sy, "");
+      case MOVEDTO:
+        return new AMessage("movedto", sx, sy, Integer.toString(value));
+      case NOTMOVEDTO:
+        return new AMessage("notmovedto", sx, sy, "");
+      case DETECTED:
+        return new AMessage(Integer.toString(value), sx, sy, "");
+      case PIRATEANSWER:
+        return new AMessage(value == 1 ? "yes" : "no", sx, sy, "");
+      case NOMESSAGE:
+        return new AMessage("NOMESSAGE", "", "", "");
+      default:
+        return new AMessage("voidmsg", "", "", "");
+    }
+  }
+
+ /**
+ *  Read a message in string form. A message type not known, including a
+ *  detector reading that is not 0, 1, 2 or 3, is read as VOIDMSG.
+ *
+ *  @param msg  the message in string form
+ *  @param out  the message where the result is stored
+ *  @return out, with the message read
+ **/
+  public static TMessage fromAMessage( AMessage msg, TMessage out ) {
+    String msgtype = msg.getComp(0);
+    switch (msgtype) {
+      case "moveto":
+        return out.set(MessageType.MOVETO, field(msg, 1), field(msg, 2), 0);
+      case "detectsat":
+        return out.set(MessageType.DETECTSAT, field(msg, 1), field(msg, 2), 0);
+      case "treasureup":
+        return out.set(MessageType.TREASUREUP, field(msg, 1), field(msg, 2), 0);
+      case "step":
+        return out.set(MessageType.STEP, field(msg, 1), field(msg, 2), 0);
+      case "movedto":
+        return out.set(MessageType.MOVEDTO, field(msg, 1), field(msg, 2), field(msg, 3));
+      case "notmovedto":
+        return out.set(MessageType.NOTMOVEDTO, field(msg, 1), field(msg, 2), 0);
+      case "yes":
+      case "no":
+        return out.set(MessageType.PIRATEANSWER, field(msg, 1), field(msg, 2),
+                       msgtype.equals("yes") ? 1 : 0);
+      case "NOMESSAGE":
+        return out.set(MessageType.NOMESSAGE, 0, 0, 0);
+      case "0":
+      case "1":
+      case "2":
+      case "3":
+        return out.set(MessageType.DETECTED, field(msg, 1), field(msg, 2),
+                       msgtype.charAt(0) - '0');
+      default:
+        return out.set(MessageType.VOIDMSG, 0, 0, 0);
+    }
+  }
+
+ /**
+ *  Show message on screen, in its string form
+ **/
+  public void showMessage() {
+    toAMessage().showMessage();
+  }
+
+  private static int field( AMessage msg, int c ) {
+    String comp = msg.getComp(c);
+    return comp.isEmpty() ? 0 : Integer.parseInt(comp);
+  }
+
+}
@@ -5,6 +5,7 @@ package apryraz.tworld;
 import java.util.ArrayList;
 
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
@@ -13,6 +14,7 @@ import static java.lang.System.exit;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Iterator;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.sat4j.core.VecInt;
@@ -29,23 +31,18 @@ import org.sat4j.reader.*;
 *  the position of Treasure
 *
 **/
-public class TreasureFinder  {
+public class TreasureFinder implements Closeable {
 
 
 /**
   * The list of steps to perform
 **/
-    ArrayList<Position> listOfSteps;
+    List<Position> listOfSteps;
 /**
 * index to the next movement to perform, and total number of movements
 **/
     int idNextStep, numMovements;
 /**
-*  Array of clauses that represent conclusiones obtained in the last
-* call to the inference function, but rewritten using the "past" variables
-**/
-    ArrayList<VecInt> futureToPast = null;
-/**
 * the current state of knowledge of the agent (what he knows about
 * every position of the world)
 **/
@@ -53,12 +50,12 @@ public class TreasureFinder  {
 /**
 *   The object that represents the interface to the Treasure World
 **/
-   TreasureWorldEnv EnvAgent;
+   TreasureWorldInterface EnvAgent;
 /**
-*   SAT solver object that stores the logical boolean formula with the rules
-*   and current knowledge about not possible locations for Treasure
+*   The inference engine that stores the rules of the Treasure World and the
+*   current knowledge about not possible locations for Treasure
 **/
-    ISolver solver;
+    InferenceEngine engine;
 /**
 *   Agent position in the world and variable to record if there is a pirate
     at that current position
@@ -68,16 +65,41 @@ public class TreasureFinder  {
 *  Dimension of the world and total size of the world (Dim^2)
 **/
     int WorldDim, WorldLinealDim;
-
 /**
-*    This set of variables CAN be use to mark the beginning of different sets
-*    of variables in your propositional formula (but you may have more sets of
-*    variables in your solution).
+*   The object that receives the events of the agent, to show them
+**/
+    TreasureWorldListener listener;
+/**
+*   Messages reused for the requests sent to the environment and for its
+*   answers in each step
+**/
+    TMessage request = new TMessage(), answer = new TMessage();
+/**
+*   Answer reused for the step requests sent to the environment
+**/
+    StepAnswer stepAnswer = new StepAnswer();
+/**
+*   Policy that chooses the movements of the agent, or null to follow the
+*   sequence of steps, and number of positions still possible
+**/
+    ExplorationPolicy policy;
+    int numPossible;
+/**
+*   Position of the Treasure, once it is the only one possible (else null),
+*   and number of steps performed when it was found
+**/
+    Position treasurePosition;
+    int locatedAtStep;
+/**
+*   Metrics where the agent reports the time of each phase of the steps
+**/
+    AgentMetrics metrics = NullMetrics.INSTANCE;
+/**
+*   Maximum number of steps requested to the environment at once, so the
+*   answers kept by the agent are bounded, and a run that stops when the
+*   Treasure is located does not request many more steps than it performs
 **/
-    int TreasurePastOffset;
-    int TreasureFutureOffset;
-    int DetectorOffset;
-    int actualLiteral;
+    static final int MAX_BATCH = TreasureWorldClient.WINDOW;
 
 
    /**
@@ -89,25 +111,48 @@ public class TreasureFinder  {
 
    **/
     public   TreasureFinder(int WDim)
+    {
+        this(WDim, new SatInferenceEngine(WDim));
+    }
+
+   /**
+     Class constructor for an agent that uses a given inference engine to
+     store the rules of the Treasure World and its knowledge.
+
+     @param WDim the dimension of the Treasure World
+     @param inferenceEngine the engine used to infer not possible positions,
+            created for the same dimension
+
+   **/
+    public   TreasureFinder(int WDim, InferenceEngine inferenceEngine)
+    {
+        this(WDim, inferenceEngine, ConsoleListener.INSTANCE);
+    }
+
+   /**
+     Class constructor for an agent that uses a given inference engine, and
+     sends its events to a given listener instead of showing them on screen.
+
+     @param WDim the dimension of the Treasure World
+     @param inferenceEngine the engine used to infer not possible positions,
+            created for the same dimension
+     @param eventListener the object that receives the events of the agent
+
+   **/
+    public   TreasureFinder(int WDim, InferenceEngine inferenceEngine,
+                            TreasureWorldListener eventListener)
     {
 
         WorldDim = WDim;
         WorldLinealDim = WorldDim * WorldDim;
-
-        try {
-            solver = buildGamma();
-        } catch (FileNotFoundException ex) {
-            Logger.getLogger(TreasureFinder.class.getName()).log(Level.SEVERE, null, ex);
-        } catch (IOException | ContradictionException ex) {
-            Logger.getLogger(TreasureFinder.class.getName()).log(Level.SEVERE, null, ex);
-        }
+        engine = inferenceEngine;
+        listener = eventListener;
         numMovements = 0;
         idNextStep = 0;
-        System.out.println("STARTING TREASURE FINDER AGENT...");
-
+        numPossible = WorldLinealDim;
 
         tfstate = new TFState(WorldDim);  // Initialize state (matrix) of knowledge with '?'
-        tfstate.printState();
+        listener.agentStarted(tfstate);
     }
 
     /**
@@ -116,19 +161,80 @@ public class TreasureFinder  {
       answers to them. This function must be called before trying to perform any
       steps with the agent.
 
-      @param environment the Environment object
+      @param environment the Environment object, or a client of an
+                         environment served by another process
 
     **/
-    public void setEnvironment( TreasureWorldEnv environment ) {
+    public void setEnvironment( TreasureWorldInterface environment ) {
 
          EnvAgent =  environment;
     }
 
 
+    /**
+      Set the object that receives the events of the agent
+
+      @param eventListener the listener, NullListener.INSTANCE for no output
+
+    **/
+    public void setListener( TreasureWorldListener eventListener ) {
+
+         listener = eventListener;
+    }
+
+    /**
+      Set the metrics where the agent and its inference engine report their
+      counters and timers
+
+      @param agentMetrics the metrics, NullMetrics.INSTANCE to not measure anything
+
+    **/
+    public void setMetrics( AgentMetrics agentMetrics ) {
+
+         metrics = agentMetrics;
+         engine.setMetrics(agentMetrics);
+    }
+
+    /**
+      Set the policy that chooses the movements of the agent, instead of
+      following the sequence of steps loaded. Then, there is always a next
+      step to perform.
+
+      @param explorationPolicy the policy, or null to follow the sequence of steps
+
+    **/
+    public void setExplorationPolicy( ExplorationPolicy explorationPolicy ) {
+
+         policy = explorationPolicy;
+    }
+
+    /**
+     *    Returns the inference engine used by the agent.
+     *
+     *    @return the inference engine of the agent
+    **/
+    public InferenceEngine getInferenceEngine()
+    {
+        return engine;
+    }
+
+    /**
+     *    Release the resources of the inference engine of the agent, as the
+     *    threads of the parallel engine. The agent can not perform more
+     *    steps after that.
+    **/
+    @Override
+    public void close()
+    {
+        engine.close();
+    }
+
+
     /**
       Load a sequence of steps to be performed by the agent. This sequence will
-      be stored in the listOfSteps ArrayList of the agent.  Steps are represented
-      as objects of the class Position.
+      be stored in the listOfSteps list of the agent.  Steps are represented
+      as objects of the class Position, but they are stored as a PositionList,
+      and they are parsed from the file without reading the whole line.
 
       @param numSteps number of steps to read from the file
       @param stepsFile the name of the text file with the line that contains
@@ -137,13 +243,15 @@ public class TreasureFinder  {
     **/
     public void loadListOfSteps( int numSteps, String stepsFile )
     {
-        String[] stepsList;
-        String steps = ""; // Prepare a list of movements to try with the FINDER Agent
         try {
-            BufferedReader br = new BufferedReader(new FileReader(stepsFile));
-            System.out.println("STEPS FILE OPENED ...");
-            steps = br.readLine();
-            br.close();
+            PositionReader reader = PositionReader.open(stepsFile);
+            listener.fileOpened(stepsFile, false);
+            try {
+                // Prepare a list of movements to try with the FINDER Agent
+                listOfSteps = reader.readAll(numSteps);
+            } finally {
+                reader.close();
+            }
         } catch (FileNotFoundException ex) {
             System.out.println("MSG.   => Steps file not found");
             exit(1);
@@ -151,16 +259,24 @@ public class TreasureFinder  {
             Logger.getLogger(TreasureFinder.class.getName()).log(Level.SEVERE, null, ex);
             exit(2);
         }
-        stepsList = steps.split(" ");
-        listOfSteps = new ArrayList<Position>(numSteps);
-        for (int i = 0 ; i < numSteps ; i++ ) {
-            String[] coords = stepsList[i].split(",");
-            listOfSteps.add(new Position(Integer.parseInt(coords[0]), Integer.parseInt(coords[1])));
-        }
         numMovements = listOfSteps.size(); // Initialization of numMovements
         idNextStep = 0;
     }
 
+    /**
+      Set the sequence of steps to be performed by the agent, without
+      reading it from a file.
+
+      @param steps the list of positions to move to, in order
+
+    **/
+    public void setListOfSteps( List<Position> steps )
+    {
+        listOfSteps = steps;
+        numMovements = listOfSteps.size();
+        idNextStep = 0;
+    }
+
     /**
      *    Returns the current state of the agent.
      *
@@ -178,34 +294,282 @@ public class TreasureFinder  {
     *    a binary answer, and then to update the current state according to the
     *    result of the logical inferences performed by the agent with its formula.
     *
+    *    The movement, the sensor reading and the pirate answer are obtained
+    *    with a single step request to the environment.
+    *
     **/
     public void runNextStep() throws
             IOException,  ContradictionException, TimeoutException
+    {
+          Position nextPosition = nextPosition();
+          if (nextPosition != null) {
+             // Move, use the Detector sensor and ask the pirate, if any,
+             // with a single request to the environment
+             long start = startTimer();
+             StepAnswer ans = EnvAgent.step(nextPosition.x, nextPosition.y, stepAnswer);
+             stopTimer(AgentMetrics.Phase.MOVE, start);
+             runStep( ans );
+          } else {
+             runStep( null );
+          }
+    }
+
+    /**
+    *    Execute steps, as runSteps does, until the Treasure is located or
+    *    maxSteps steps have been performed. So no more steps are performed
+    *    once there is only one possible position. Without an exploration
+    *    policy, it also stops at the end of the sequence of steps.
+    *
+    *    @param maxSteps maximum number of steps to perform
+    *    @return the number of steps performed
+    **/
+    public int runUntilLocated( int maxSteps ) throws
+            IOException,  ContradictionException, TimeoutException
+    {
+          if (policy != null) {
+             int steps = 0;
+             while (steps < maxSteps && treasurePosition == null) {
+                runNextStep();
+                steps++;
+             }
+             return steps;
+          }
+          return runBatch(Math.max(0, Math.min(maxSteps, numMovements - idNextStep)), true);
+    }
+
+    /**
+     *    Check whether the Treasure has been located: there is only one
+     *    position where it can be.
+     *
+     *    @return true if the Treasure has been located
+    **/
+    public boolean isTreasureLocated()
+    {
+        return treasurePosition != null;
+    }
+
+    /**
+     *    Returns the position of the Treasure, if it has been located.
+     *
+     *    @return the position of the Treasure, or null if not located yet
+    **/
+    public Position getTreasurePosition()
+    {
+        return treasurePosition;
+    }
+
+    /**
+     *    Returns the number of steps performed when the Treasure was located.
+     *
+     *    @return the number of steps, or 0 if not located yet
+    **/
+    public int getLocatedAtStep()
+    {
+        return locatedAtStep;
+    }
+
+    /**
+     *    Returns the number of positions where the Treasure can still be.
+     *
+     *    @return the number of possible positions after the last step
+    **/
+    public int getNumPossible()
+    {
+        return numPossible;
+    }
+
+    /**
+    *    Execute the next numSteps steps in the sequence of steps of the agent,
+    *    as runNextStep does, but getting the answers of the environment with
+    *    a single request for every MAX_BATCH steps. If there are less steps
+    *    left, the rest of steps are performed with runNextStep.
+    *
+    *    @param numSteps number of steps to perform
+    *    @return the number of steps of the sequence that have been performed
+    **/
+    public int runSteps( int numSteps ) throws
+            IOException,  ContradictionException, TimeoutException
+    {
+          if (policy != null) {
+             // Each movement depends on the answers of the previous step
+             for (int i = 0; i < numSteps; i++) {
+                runNextStep();
+             }
+             return numSteps;
+          }
+          int batch = runBatch(Math.max(0, Math.min(numSteps, numMovements - idNextStep)), false);
+          for (int i = batch; i < numSteps; i++) {
+             runNextStep();
+          }
+          return batch;
+    }
+
+    /**
+    *    Execute the next batch steps of the sequence of steps, getting the
+    *    answers of the environment with a single request for every MAX_BATCH
+    *    steps. So, once the Treasure is located, the environment is not asked
+    *    about more than MAX_BATCH steps that are not performed.
+    *
+    *    @param batch number of steps to perform, all of them in the sequence
+    *    @param stopWhenLocated true to not perform the rest of steps once
+    *           the Treasure is located
+    *    @return the number of steps performed
+    **/
+    private int runBatch( int batch, boolean stopWhenLocated ) throws
+            IOException,  ContradictionException, TimeoutException
+    {
+          int performed = 0;
+          while (performed < batch && !(stopWhenLocated && treasurePosition != null)) {
+             int chunk = Math.min(batch - performed, MAX_BATCH);
+             long start = startTimer();
+             StepAnswer[] answers =
+                     EnvAgent.replaySteps(listOfSteps.subList(idNextStep, idNextStep + chunk));
+             reportTime(AgentMetrics.Phase.MOVE, elapsed(start), chunk);
+             for (StepAnswer ans : answers) {
+                if (stopWhenLocated && treasurePosition != null) {
+                   break;
+                }
+                idNextStep = idNextStep + 1;
+                runStep( ans );
+                performed++;
+             }
+          }
+          return performed;
+    }
+
+    /**
+    *    Perform a step with the answer of the environment to the step request,
+    *    or with no movement if there are no more steps.
+    *
+    *    @param ans the answer of the environment, or null if no more steps
+    **/
+    private void runStep( StepAnswer ans ) throws
+            IOException,  ContradictionException, TimeoutException
     {
           pirateFound = 0;
           // Add the conclusions obtained in the previous step
           // but as clauses that use the "past" variables
+          // This is part of the INFERENCE phase, as it only adds the
+          // conclusions of the inference of the previous step
+          long start = startTimer();
           addLastFutureClausesToPastClauses();
+          long carriedNanos = elapsed(start);
 
-          // Ask to move, and check whether it was successful
-          // Also, record if a pirate was found at that position
-          processMoveAnswer( moveToNext( ) );
-
-
-          // Next, use Detector sensor to discover new information
-          processDetectorSensorAnswer( DetectsAt() );
-          // If a pirate was found at new agent position, ask question to
-          // pirate and process Answer to discover new information
-          if (pirateFound == 1) {
-             processPirateAnswer( IsTreasureUpOrDown() );
+          if (ans == null) {
+             listener.noMoreSteps();
+             processDetectorSensorAnswer( DetectsAt( answer ) );
+          } else {
+             processStepAnswer( ans );
           }
 
           // Perform logical consequence questions for all the positions
           // of the Treasure World
+          start = startTimer();
           performInferenceQuestions();
-          tfstate.printState();      // Print the resulting knowledge matrix
+          reportTime(AgentMetrics.Phase.INFERENCE, carriedNanos + elapsed(start), 1);
+          listener.stepFinished(idNextStep, tfstate);
+          if (metrics.isEnabled()) {
+             metrics.stepFinished(idNextStep, numPossible);
+          }
+    }
+
+    /**
+    *   Read the time, if the metrics are enabled
+    *
+    *   @return the current time in nanoseconds, or 0 if metrics are not enabled
+    **/
+    private long startTimer()
+    {
+        return metrics.isEnabled() ? System.nanoTime() : 0;
     }
 
+    /**
+    *   Returns the time elapsed since a time read with startTimer()
+    *
+    *   @param start the time read with startTimer()
+    *   @return the time elapsed in nanoseconds, or 0 if metrics are not enabled
+    **/
+    private long elapsed( long start )
+    {
+        return metrics.isEnabled() ? System.nanoTime() - start : 0;
+    }
+
+    /**
+    *   Report the time spent in a phase, if the metrics are enabled
+    *
+    *   @param phase the phase of the step
+    *   @param start the time when the phase started, from startTimer()
+    **/
+    private void stopTimer( AgentMetrics.Phase phase, long start )
+    {
+        reportTime(phase, elapsed(start), 1);
+    }
+
+    /**
+    *   Report a time spent in a phase, if the metrics are enabled
+    *
+    *   @param phase the phase of the steps
+    *   @param nanos the time spent, in nanoseconds
+    *   @param steps number of steps measured
+    **/
+    private void reportTime( AgentMetrics.Phase phase, long nanos, int steps )
+    {
+        if (metrics.isEnabled()) {
+            metrics.phaseTime(phase, nanos, steps);
+        }
+    }
+
+    /**
+    *   Process the answer obtained from the environment to a step request,
+    *   as the answers to the moveto, detectsat and treasureup messages. If the
+    *   agent could not move, the detector is used at its current position.
+    *
+    *   @param ans the answer given by the environment to the step request
+    **/
+    public void processStepAnswer( StepAnswer ans ) throws
+            IOException, ContradictionException,  TimeoutException
+    {
+          listener.moving(ans.getX(), ans.getY());
+          if (!ans.isMoved()) {
+             processMoveAnswer( answer.set(MessageType.NOTMOVEDTO, ans.getX(), ans.getY(), 0) );
+             processDetectorSensorAnswer( DetectsAt( answer ) );
+             return;
+          }
+          processMoveAnswer( answer.set(MessageType.MOVEDTO, ans.getX(), ans.getY(), ans.getPirate()) );
+
+          listener.detecting(agentX, agentY);
+          long start = startTimer();
+          processDetectorSensorAnswer( answer.set(MessageType.DETECTED, agentX, agentY, ans.getReading()) );
+          stopTimer(AgentMetrics.Phase.SENSOR, start);
+          if (pirateFound == 1) {
+             listener.askingPirate(agentX, agentY);
+             start = startTimer();
+             processPirateAnswer( answer.set(MessageType.PIRATEANSWER, agentX, agentY, ans.getTreasureUp()) );
+             stopTimer(AgentMetrics.Phase.PIRATE, start);
+          }
+    }
+
+
+    /**
+    *   Get the next position to move to: the one chosen by the exploration
+    *   policy, if the agent has one, or else the next one of the sequence
+    *   of steps.
+    *
+    *   @return the next position, or null if there are no more steps
+    **/
+    private Position nextPosition()
+    {
+        if (policy != null) {
+            idNextStep = idNextStep + 1;
+            return policy.chooseNext(agentX, agentY, engine.getCandidates(), numPossible);
+        }
+        if (idNextStep < numMovements) {
+            Position nextPosition = listOfSteps.get(idNextStep);
+            idNextStep = idNextStep + 1;
+            return nextPosition;
+        }
+        return null;
+    }
 
     /**
     *   Ask the agent to move to the next position, by sending an appropriate
@@ -217,15 +581,25 @@ public class TreasureFinder  {
     **/
     public AMessage moveToNext()
     {
-        Position nextPosition;
+        return moveToNext( new TMessage() ).toAMessage();
+    }
 
-        if (idNextStep < numMovements) {
-            nextPosition = listOfSteps.get(idNextStep);
-            idNextStep = idNextStep + 1;
-            return moveTo(nextPosition.x, nextPosition.y);
+    /**
+    *   Typed version of moveToNext(): the answer of the environment is
+    *   stored in the message given.
+    *
+    *   @param ans message where the answer is stored
+    *   @return ans, with the answer message from the environment
+    **/
+    public TMessage moveToNext( TMessage ans )
+    {
+        Position nextPosition = nextPosition();
+
+        if (nextPosition != null) {
+            return moveTo(nextPosition.x, nextPosition.y, ans);
         } else {
-            System.out.println("NO MORE steps to perform at agent!");
-            return (new AMessage("NOMESSAGE","","",""));
+            listener.noMoreSteps();
+            return ans.set(MessageType.NOMESSAGE, 0, 0, 0);
         }
     }
 
@@ -243,12 +617,24 @@ public class TreasureFinder  {
     **/
     public AMessage moveTo( int x, int y )
     {
-        // Tell the EnvironmentAgentID that we want to move
-        AMessage msg, ans;
+        return moveTo( x, y, new TMessage() ).toAMessage();
+    }
 
-        msg = new AMessage("moveto", (new Integer(x)).toString(), (new Integer(y)).toString(), "");
-        ans = EnvAgent.acceptMessage( msg );
-        System.out.println("FINDER => moving to : (" + x + "," + y + ")");
+    /**
+    *  Typed version of moveTo(x,y): the answer of the environment is stored
+    *  in the message given.
+    *
+    *  @param x  horizontal coordinate of the movement to perform
+    *  @param y  vertical coordinate of the movement to perform
+    *  @param ans message where the answer is stored
+    *
+    *  @return ans, with the answer obtained from the environment object
+    **/
+    public TMessage moveTo( int x, int y, TMessage ans )
+    {
+        // Tell the EnvironmentAgentID that we want to move
+        EnvAgent.acceptMessage( request.set(MessageType.MOVETO, x, y, 0), ans );
+        listener.moving(x, y);
 
         return ans;
     }
@@ -261,11 +647,21 @@ public class TreasureFinder  {
    **/
     public void processMoveAnswer ( AMessage moveans )
     {
-        if ( moveans.getComp(0).equals("movedto") ) {
-          agentX = Integer.parseInt( moveans.getComp(1) );
-          agentY = Integer.parseInt( moveans.getComp(2) );
-          pirateFound = Integer.parseInt( moveans.getComp(3) );
-          System.out.println("FINDER => moved to : (" + agentX + "," + agentY + ")" + " Pirate found : "+pirateFound );
+        processMoveAnswer( TMessage.fromAMessage(moveans, new TMessage()) );
+    }
+
+   /**
+     * Typed version of processMoveAnswer(AMessage)
+     *
+     * @param moveans the answer given by the environment to the last move message
+   **/
+    public void processMoveAnswer ( TMessage moveans )
+    {
+        if ( moveans.getType() == MessageType.MOVEDTO ) {
+          agentX = moveans.getX();
+          agentY = moveans.getY();
+          pirateFound = moveans.getValue();
+          listener.moved(agentX, agentY, pirateFound);
         }
     }
 
@@ -277,12 +673,19 @@ public class TreasureFinder  {
     **/
     public AMessage DetectsAt( )
     {
-        AMessage msg, ans;
+        return DetectsAt( new TMessage() ).toAMessage();
+    }
 
-        msg = new AMessage( "detectsat", (new Integer(agentX)).toString(),
-                                       (new Integer(agentY)).toString(), "" );
-        ans = EnvAgent.acceptMessage( msg );
-        System.out.println("FINDER => detecting at : (" + agentX + "," + agentY + ")");
+    /**
+     *   Typed version of DetectsAt()
+     *
+     *   @param ans message where the answer is stored
+     *   @return ans, with the answer given by the environment
+    **/
+    public TMessage DetectsAt( TMessage ans )
+    {
+        EnvAgent.acceptMessage( request.set(MessageType.DETECTSAT, agentX, agentY, 0), ans );
+        listener.detecting(agentX, agentY);
         return ans;
     }
 
@@ -296,9 +699,41 @@ public class TreasureFinder  {
     public void processDetectorSensorAnswer( AMessage ans ) throws
             IOException, ContradictionException,  TimeoutException
     {
-        int x = Integer.parseInt(ans.getComp(1));
-        int y = Integer.parseInt(ans.getComp(2));
-        String detects = ans.getComp(0);
+        TMessage msg = TMessage.fromAMessage(ans, new TMessage());
+        processDetectorSensorAnswer( msg, ans.getComp(0) );
+    }
+
+    /**
+    *   Typed version of processDetectorSensorAnswer(AMessage)
+    *
+    *   @param ans message obtained to the query "Detects at (x,y)?", of type
+    *          DETECTED with the reading as value
+    **/
+    public void processDetectorSensorAnswer( TMessage ans ) throws
+            IOException, ContradictionException,  TimeoutException
+    {
+        String answerText = ans.getType() == MessageType.DETECTED
+                ? Integer.toString(ans.getValue()) : ans.toAMessage().getComp(0);
+        processDetectorSensorAnswer( ans, answerText );
+    }
+
+    /**
+    *   Add the evidence of a detector answer, or report the answer as it was
+    *   received if it is not a valid reading
+    *
+    *   @param ans the answer, of type DETECTED with the reading as value
+    *   @param answerText the reading as received, to report it if not valid
+    **/
+    private void processDetectorSensorAnswer( TMessage ans, String answerText ) throws
+            IOException, ContradictionException,  TimeoutException
+    {
+        int x = ans.getX();
+        int y = ans.getY();
+        int detects = ans.getType() == MessageType.DETECTED ? ans.getValue() : -1;
+        if (detects < 0 || detects > 3) {
+            listener.invalidDetectorReading(answerText);
+            return;
+        }
 
         // Call your function/functions to add the evidence clauses
         // to Gamma to then be able to infer new NOT possible positions
@@ -308,126 +743,30 @@ public class TreasureFinder  {
     }
 
     /**
-    * Adds the clauses obtained with the metal sensor information to the formula Gamma.
+    * Adds the evidence obtained with the metal sensor information to the
+    * knowledge of the inference engine.
     *
     * @param x        x coordinate of position.
     * @param y        y coordinate of position.
     * @param reading  metal sensor can give four different readings: 0, 1, 2 or 3.
     * @throws ContradictionException if inserting contradictory clauses in formula.
     **/
-    private void getDetectorSensorClauses(int x, int y, String reading) throws ContradictionException {
-      System.out.println("Metal sensor returned: " + reading);
-      System.out.println("Inserting evidence clause");
+    private void getDetectorSensorClauses(int x, int y, int reading) throws ContradictionException {
       switch (reading) {
 
-        case "0":
-          getSensorClauses0();
-          break;
-
-        case "1":
-          getSensorClauses1();
-          break;
-
-        case "2":
-          getSensorClauses2();
-          break;
-
-        case "3":
-          getSensorClauses3();
+        case 0:
+        case 1:
+        case 2:
+        case 3:
+          listener.detectorReading(reading);
+          engine.addDetectorEvidence(agentX, agentY, reading);
           break;
 
         default:
-          System.out.println("FINDER => Error with metal sensor reading");
           break;
       }
     }
 
-    /**
-    * Add denied clauses that are within the range of readings 1, 2 and 3
-    *
-    * @throws ContradictionException if inserting contradictory clauses in formula.
-    **/
-    private void getSensorClauses0() throws ContradictionException{
-        for (int x=1; x<=WorldDim; x++){
-            for (int y=1; y<=WorldDim; y++){
-                VecInt clause = new VecInt();
-                if (agentX-2<=x && x<=agentX+2 && agentY-2<=y && y<=agentY+2){
-                  int linealIndex = -(coordToLineal(x, y, TreasureFutureOffset));
-                  clause.insertFirst(linealIndex);
-                  solver.addClause(clause);
-                }
-            }
-        }
-    }
-
-    /**
-    * Add denied clauses that are within the range of the readings 1
-    *
-    * @throws ContradictionException if inserting contradictory clauses in formula.
-    **/
-    private void getSensorClauses1() throws ContradictionException{
-        for (int x=1; x<=WorldDim; x++){
-            for (int y=1; y<=WorldDim; y++){
-                VecInt clause = new VecInt();
-                if (x==agentX && y==agentY){
-                    // Tiles where the treasure is located
-                }else{
-                    int linealIndex = -(coordToLineal(x, y, TreasureFutureOffset));
-                    clause.insertFirst(linealIndex);
-                    solver.addClause(clause);
-                }
-            }
-        }
-    }
-
-    /**
-    * Add denied clauses that are within the range of the readings 2
-    *
-    * @throws ContradictionException if inserting contradictory clauses in formula.
-    **/
-    private void getSensorClauses2() throws ContradictionException {
-        for (int x=1; x<=WorldDim; x++){
-            for (int y=1; y<=WorldDim; y++){
-                VecInt clause = new VecInt();
-                if (  (x==agentX-1 && y==agentY+1) || (x==agentX && y==agentY+1) || (x==agentX+1 && y==agentY+1) ||
-                      (x==agentX-1 && y==agentY  )                               || (x==agentX+1 && y==agentY  ) ||
-                      (x==agentX-1 && y==agentY-1) || (x==agentX && y==agentY-1) || (x==agentX+1 && y==agentY-1)
-                    ){
-                    // Tiles where the treasure is located
-                }else{
-                    int linealIndex = -(coordToLineal(x, y, TreasureFutureOffset));
-                    clause.insertFirst(linealIndex);
-                    solver.addClause(clause);
-                }
-            }
-        }
-    }
-
-    /**
-    * Add denied clauses that are within the range of the readings 3
-    *
-    * @throws ContradictionException if inserting contradictory clauses in formula.
-    **/
-    private void getSensorClauses3() throws ContradictionException {
-        for (int x=1; x<=WorldDim; x++){
-            for (int y=1; y<=WorldDim; y++){
-                VecInt clause = new VecInt();
-                if (  (x==agentX-2 && y==agentY+2) || (x==agentX-1 && y==agentY+2) || (x==agentX && y==agentY+2) || (x==agentX+1 && y==agentY+2) || (x==agentX+2 && y==agentY+2) ||
-                      (x==agentX-2 && y==agentY+1)                                                                                               || (x==agentX+2 && y==agentY+1) ||
-                      (x==agentX-2 && y==agentY  )                                                                                               || (x==agentX+2 && y==agentY  ) ||
-                      (x==agentX-2 && y==agentY-1)                                                                                               || (x==agentX+2 && y==agentY-1) ||
-                      (x==agentX-2 && y==agentY-2) || (x==agentX-1 && y==agentY-2) || (x==agentX && y==agentY-2) || (x==agentX+1 && y==agentY-2) || (x==agentX+2 && y==agentY-2)
-                    ){
-                    // Tiles where the treasure is located
-                }else{
-                    int linealIndex = -(coordToLineal(x, y, TreasureFutureOffset));
-                    clause.insertFirst(linealIndex);
-                    solver.addClause(clause);
-                }
-            }
-        }
-    }
-
     /**
      *   Send to the pirate (using the environment object) the question:
      *   "Is the treasure up or down of (agentX,agentY)  ?"
@@ -436,12 +775,19 @@ public class TreasureFinder  {
     **/
     public AMessage IsTreasureUpOrDown()
     {
-        AMessage msg, ans;
+        return IsTreasureUpOrDown( new TMessage() ).toAMessage();
+    }
 
-        msg = new AMessage( "treasureup", (new Integer(agentX)).toString(),
-                                         (new Integer(agentY)).toString(), "" );
-        ans = EnvAgent.acceptMessage( msg );
-        System.out.println("FINDER => checking treasure up of : (" + agentX + "," + agentY + ")");
+    /**
+     *   Typed version of IsTreasureUpOrDown()
+     *
+     *   @param ans message where the answer is stored
+     *   @return ans, with the answer given by the pirate
+    **/
+    public TMessage IsTreasureUpOrDown( TMessage ans )
+    {
+        EnvAgent.acceptMessage( request.set(MessageType.TREASUREUP, agentX, agentY, 0), ans );
+        listener.askingPirate(agentX, agentY);
         return ans;
     }
 
@@ -454,223 +800,57 @@ public class TreasureFinder  {
     **/
     public void processPirateAnswer(AMessage ans) throws ContradictionException
     {
-        int y = Integer.parseInt(ans.getComp(2));
-        String isup = ans.getComp(0);
-        // isup should be either "yes" (is up of agent position), or "no"
-        // Call your function/functions to add the evidence clauses
-        // to Gamma to then be able to infer new NOT possible positions
-        if (isup=="yes"){
-            getPirateClausesUp( y, isup);
-        }
-        else{
-            getPirateClausesDown( y, isup);
-        }
-    }
-
-    /**
-    * Add all positions above the agent's current position as clauses
-    *
-    * @throws ContradictionException if inserting contradictory clauses in formula.
-    **/
-    private void getPirateClausesUp(int y, String isup) throws ContradictionException {
-        for (int i=1; i<=y; i++){
-            addLine(i);
-        }
+        processPirateAnswer( TMessage.fromAMessage(ans, new TMessage()) );
     }
 
     /**
-    * Add all positions below the agent's current position as clauses
+    * Typed version of processPirateAnswer(AMessage)
     *
+    * @param ans the answer of the pirate, of type PIRATEANSWER with value 1
+    *            if the Treasure is up of the agent
     * @throws ContradictionException if inserting contradictory clauses in formula.
     **/
-    private void getPirateClausesDown(int y, String isup) throws ContradictionException {
-        for (int i=y+1; i<=WorldDim; i++){
-            addLine(i);
-        }
-    }
-
-    /**
-    * Add all the clauses of the row indicated as parameter
-    *
-    * @param i        y coordinate of the row.
-    * @throws ContradictionException if inserting contradictory clauses in formula.
-    **/
-    private void addLine(int i) throws ContradictionException {
-        for (int x=0; x<WorldDim;x++){
-            VecInt clause = new VecInt();
-            int linealIndex = -(coordToLineal(x, i, TreasureFutureOffset));
-            clause.insertFirst(linealIndex);
-            solver.addClause(clause);
-        }
+    public void processPirateAnswer(TMessage ans) throws ContradictionException
+    {
+        int y = ans.getY();
+        // value should be either 1 (is up of agent position), or 0
+        // Call your function/functions to add the evidence clauses
+        // to Gamma to then be able to infer new NOT possible positions
+        engine.addPirateEvidence(y, ans.getValue() == 1);
     }
 
     /**
-    *  This function should add all the clauses stored in the list
-    *  futureToPast to the formula stored in solver.
-    *   Use the function addClause( VecInt ) to add each clause to the solver
+    *  Add to the knowledge of the inference engine the conclusions obtained
+    *  in the previous step. With the SAT engine, these are the clauses stored
+    *  in the list futureToPast, that use the "past" variables.
     *
     **/
     public void addLastFutureClausesToPastClauses() throws  IOException,
             ContradictionException, TimeoutException
     {
-      if (futureToPast != null) {
-			     for (VecInt vecInt : futureToPast) {
-				         solver.addClause(vecInt);
-			     }
-		  }
+        engine.startStep();
     }
 
     /**
-    * This function should check, using the future variables related
-    * to possible positions of Treasure, whether it is a logical consequence
-    * that Treasure is NOT at certain positions. This should be checked for all the
-    * positions of the Treasure World.
-    * The logical consequences obtained, should be then stored in the futureToPast list
-    * but using the variables corresponding to the "past" variables of the same positions
-    *
-    * An efficient version of this function should try to not add to the futureToPast
-    * conclusions that were already added in previous steps, although this will not produce
-    * any bad functioning in the reasoning process with the formula.
+    * This function checks, with the inference engine, the positions where it
+    * is a logical consequence that Treasure is NOT there, and marks them in
+    * the state of the agent.
     **/
     public void  performInferenceQuestions() throws  IOException,
             ContradictionException, TimeoutException
     {
-        int posibles=0, tx=0, ty=0;
-        futureToPast = new ArrayList<>();
-    	  for (int x = 1; x <= WorldDim; x++) {
-    		    for (int y = 1; y <= WorldDim; y++) {
-                // Get variable number for position i,j in past variables
-                int linealIndex = coordToLineal(x, y, TreasureFutureOffset);
-                VecInt variablePositive = new VecInt();
-                variablePositive.insertFirst(linealIndex);
-
-                // Check if Gamma + variablePositive is unsatisfiable:
-          			if (!(solver.isSatisfiable(variablePositive))) {
-          				  tfstate.set(y,x, "X");
-          			}else{
-                    tfstate.set(y,x,"?");
-                    posibles++; tx=x; ty=y;
-                }
-    		}
-        }
+        int posibles = engine.performInferenceQuestions(tfstate);
+        numPossible = posibles;
         if(posibles==1){
-            System.out.println("Treasure: -> ("+tx+","+ty+")");
-            tfstate.set(ty,tx,"?");
+            int lineal = engine.getCandidates().nextSetBit(0);
+            int tx = lineal / WorldDim + 1;
+            int ty = lineal % WorldDim + 1;
+            if (treasurePosition == null) {
+                treasurePosition = new Position(tx, ty);
+                locatedAtStep = idNextStep;
+            }
+            listener.treasureLocated(tx, ty);
         }
     }
 
-    /**
-    * This function builds the initial logical formula of the agent and stores it
-    * into the solver object.
-    *
-    *  @return returns the solver object where the formula has been stored
-    **/
-    public ISolver buildGamma() throws UnsupportedEncodingException,
-            FileNotFoundException, IOException, ContradictionException
-    {
-        int totalNumVariables;
-
-        // You must set this variable to the total number of boolean variables
-        // in your formula Gamma
-        totalNumVariables = WorldLinealDim;
-        solver = SolverFactory.newDefault();
-        solver.setTimeout(3600);
-        solver.newVar(totalNumVariables);
-        // This variable is used to generate, in a particular sequential order,
-        // the variable indentifiers of all the variables
-        actualLiteral = 1;
-
-        // call here functions to add the different sets of clauses
-        // of Gamma to the solver object
-        pastTreasure(); // Treasure t-1, from 1,1 to n,n (1 clause)
-		    futureTreasure(); // Treasure t+1, from 1,1 to n,n (1 clause)
-		    pastTreasureToFutureTreasure(); // Treasure t-1 -> Treasure t+1 (nxn clauses)
-
-        return solver;
-    }
-
-    /**
-	 * Adds the clause that says that the treasure must be in some position
-	 * with respect to the variables that talk about past positions.
-	 *
-	 * @throws ContradictionException if inserting contradictory clauses in formula (solver).
-	 **/
-  	private void pastTreasure() throws ContradictionException {
-  		TreasurePastOffset = actualLiteral;
-  		VecInt pastClause = new VecInt();
-  		for (int i = 0; i < WorldLinealDim; i++) {
-  			pastClause.insertFirst(actualLiteral);
-  			actualLiteral++;
-  		}
-  		solver.addClause(pastClause);
-  	}
-
-    /**
-  	 * Adds the clause that says that the treasure must be in some position
-  	 * with respect to the variables that talk about past positions.
-  	 *
-  	 * @throws ContradictionException if inserting contradictory clauses in formula (solver).
-  	 **/
-    	private void futureTreasure() throws ContradictionException {
-    		TreasureFutureOffset = actualLiteral;
-    		VecInt futureClause = new VecInt();
-    		for (int i = 0; i < WorldLinealDim; i++) {
-    			futureClause.insertFirst(actualLiteral);
-    			actualLiteral++;
-    		}
-    		solver.addClause(futureClause);
-    	}
-
-      /**
-  	 * Adds the clauses that say that if in the past we reached the conclusion
-  	 * that Treasure cannot be in a position (x,y), then this should be also true
-  	 * in the future.
-  	 *
-  	 * @throws ContradictionException if inserting contradictory clauses in formula (solver).
-  	 **/
-    	private void pastTreasureToFutureTreasure() throws ContradictionException {
-    		for (int i = 0; i < WorldLinealDim; i++) {
-    			VecInt clause = new VecInt();
-    			clause.insertFirst(i + 1);
-    			clause.insertFirst(-(i + TreasureFutureOffset));
-    			solver.addClause(clause);
-    		}
-    	}
-
-     /**
-     * Convert a coordinate pair (x,y) to the integer value  t_[x,y]
-     * of variable that stores that information in the formula, using
-     * offset as the initial index for that subset of position variables
-     * (past and future position variables have different variables, so different
-     * offset values)
-     *
-     *  @param x x coordinate of the position variable to encode
-     *  @param y y coordinate of the position variable to encode
-     *  @param offset initial value for the subset of position variables
-     *         (past or future subset)
-     *  @return the integer indentifer of the variable  b_[x,y] in the formula
-    **/
-    public int coordToLineal(int x, int y, int offset) {
-        return ((x - 1) * WorldDim) + (y - 1) + offset;
-    }
-
-    /**
-     * Perform the inverse computation to the previous function.
-     * That is, from the identifier t_[x,y] to the coordinates  (x,y)
-     *  that it represents
-     *
-     * @param lineal identifier of the variable
-     * @param offset offset associated with the subset of variables that
-     *        lineal belongs to
-     * @return array with x and y coordinates
-    **/
-    public int[] linealToCoord(int lineal, int offset)
-    {
-        lineal = lineal - offset + 1;
-        int[] coords = new int[2];
-        coords[1] = ((lineal-1) % WorldDim) + 1;
-        coords[0] = (lineal - 1) / WorldDim + 1;
-        return coords;
-    }
-
 }
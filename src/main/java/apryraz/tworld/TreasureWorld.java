@@ -3,6 +3,7 @@ package apryraz.tworld;
 
 
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import org.sat4j.specs.*;
 import org.sat4j.minisat.*;
 import org.sat4j.reader.*;
@@ -32,9 +33,52 @@ public class TreasureWorld {
   public static void runStepsSequence( int wDim, int tX, int tY,
                                       int numSteps, String fileSteps, String filePirates ) throws
                                  IOException,  ContradictionException, TimeoutException {
+    runStepsSequence(wDim, tX, tY, numSteps, fileSteps, filePirates, ConsoleListener.INSTANCE);
+  }
+
+  /**
+   Same as the previous function, but the events of the agent and the
+   environment are sent to the listener given.
+
+   @param wDim the dimension of world
+   @param tX x coordinate of Barcenas position
+   @param tY y coordinate of Barcenas position
+   @param numSteps num of steps to perform
+   @param fileSteps file name with sequence of steps to perform
+   @param filePirates file name with sequence of steps to perform
+   @param listener object that receives the events of the run
+
+   **/
+  public static void runStepsSequence( int wDim, int tX, int tY,
+                                      int numSteps, String fileSteps, String filePirates,
+                                      TreasureWorldListener listener ) throws
+                                 IOException,  ContradictionException, TimeoutException {
+    runStepsSequence(wDim, tX, tY, numSteps, fileSteps, filePirates, listener, false);
+  }
+
+  /**
+   Same as the previous function, but it can stop as soon as the Treasure
+   is located, without performing the rest of steps.
+
+   @param wDim the dimension of world
+   @param tX x coordinate of Barcenas position
+   @param tY y coordinate of Barcenas position
+   @param numSteps num of steps to perform
+   @param fileSteps file name with sequence of steps to perform
+   @param filePirates file name with sequence of steps to perform
+   @param listener object that receives the events of the run
+   @param stopWhenLocated true to stop when the Treasure is located
+
+   @return the agent, to get the results of the run
+   **/
+  public static TreasureFinder runStepsSequence( int wDim, int tX, int tY,
+                                      int numSteps, String fileSteps, String filePirates,
+                                      TreasureWorldListener listener, boolean stopWhenLocated ) throws
+                                 IOException,  ContradictionException, TimeoutException {
     // Make instances of TreasureFinder agent and environment object classes
-    TreasureFinder TAgent = new TreasureFinder(wDim) ;
+    TreasureFinder TAgent = new TreasureFinder(wDim, new SatInferenceEngine(wDim), listener) ;
     TreasureWorldEnv EnvAgent = new TreasureWorldEnv(wDim, tX, tY) ;
+    EnvAgent.setListener(listener);
 
 
     // Set environment object, and load list of pirate positions
@@ -44,11 +88,56 @@ public class TreasureWorld {
     // load list of steps into the Finder Agent
     TAgent.loadListOfSteps(numSteps, fileSteps);
 
-    // Execute sequence of steps with the Agent
-    for (int stepNum = 0; stepNum < numSteps; stepNum++) {
-  		TAgent.runNextStep();
-  	}
+    // Execute sequence of steps with the Agent, getting the answers of the
+    // environment with a single request for every batch of steps
+    if (stopWhenLocated) {
+      TAgent.runUntilLocated(numSteps);
+    } else {
+      TAgent.runSteps(numSteps);
+    }
+    return TAgent;
+
+  }
 
+  /**
+   Execute all the steps of a binary scenario file (see ScenarioFile), with
+   the world, Treasure position and pirates of the scenario.
+
+   @param scenarioFile file name of the scenario
+   @param listener object that receives the events of the run
+
+   **/
+  public static void runScenario( String scenarioFile, TreasureWorldListener listener ) throws
+                                 IOException,  ContradictionException, TimeoutException {
+    ScenarioFile scenario = ScenarioFile.open(scenarioFile);
+    try {
+      int wDim = scenario.getDim();
+      TreasureFinder TAgent = new TreasureFinder(wDim, new SatInferenceEngine(wDim), listener) ;
+      TreasureWorldEnv EnvAgent = new TreasureWorldEnv(wDim, scenario.getTreasureX(), scenario.getTreasureY()) ;
+      EnvAgent.setListener(listener);
+      EnvAgent.setPiratesLocations(scenario.getPirates());
+      TAgent.setEnvironment(EnvAgent);
+      TAgent.setListOfSteps(scenario.getSteps());
+
+      TAgent.runSteps(scenario.getSteps().size());
+    } finally {
+      scenario.close();
+    }
+  }
+
+  /**
+  *  Returns the listener for an output mode: "console", "quiet", "trace"
+  *  or "dump:N"
+  **/
+  static TreasureWorldListener listenerFor( String mode ) {
+    if (mode.equals("quiet")) {
+      return NullListener.INSTANCE;
+    } else if (mode.equals("trace")) {
+      return new JsonTraceListener(new OutputStreamWriter(System.out));
+    } else if (mode.startsWith("dump:")) {
+      return new StateDumpListener(Integer.parseInt(mode.substring(5)), System.out);
+    }
+    return ConsoleListener.INSTANCE;
   }
 
   /**
@@ -59,6 +148,14 @@ public class TreasureWorld {
   *  arg[3] = num of steps to perform
   *  arg[4] = file name with sequence of steps to perform
   *  arg[5] = file name with list of pirate positions
+  *  arg[6] = (optional) output mode: "console" (default), "quiet" for no
+  *           output, "trace" for a JSON trace, or "dump:N" to print only
+  *           the state every N steps
+  *  arg[7] = (optional) "stop" to stop when the Treasure is located
+  *
+  *  Or, to run a binary scenario file (see ScenarioFile):
+  *  arg[0] = file name of the scenario
+  *  arg[1] = (optional) output mode, as arg[6]
   **/
   public static void main ( String[] args) throws ParseFormatException,
           IOException,  ContradictionException, TimeoutException {
@@ -73,7 +170,11 @@ public class TreasureWorld {
   			int numSteps = Integer.parseInt(args[3]);
   			String stepsFile = args[4];
         String piratesFile = args[5];
-  			runStepsSequence(WorldDim, TreasureX, TreasureY, numSteps, stepsFile, piratesFile);
+        TreasureWorldListener listener = listenerFor(args.length > 6 ? args[6] : "console");
+        boolean stop = args.length > 7 && args[7].equals("stop");
+  			runStepsSequence(WorldDim, TreasureX, TreasureY, numSteps, stepsFile, piratesFile, listener, stop);
+  	} else if (args != null && (args.length == 1 || args.length == 2)) {
+        runScenario(args[0], listenerFor(args.length > 1 ? args[1] : "console"));
   	} else {
   			System.out.println("Error: Not enough arguments given");
   	}
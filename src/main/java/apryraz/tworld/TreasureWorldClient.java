@@ -0,0 +1,183 @@
+package apryraz.tworld;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+
+
+/**
+*  Interface to a Treasure World served by a TreasureWorldServer, that the
+*  TreasureFinder agent can use as its environment.
+*
+*  Besides the calls of TreasureWorldInterface, that wait for the answer of
+*  each request, requests can be pipelined: send them with sendMessage and
+*  sendStep, call flush, and then read the answers, in the same order, with
+*  receiveMessage and receiveStep. At most WINDOW requests should be sent
+*  before reading their answers, so the buffers of both sides do not fill.
+*
+*  Errors of the connection are thrown as IllegalStateException by the calls
+*  of TreasureWorldInterface, that can not throw IOException.
+**/
+public class TreasureWorldClient implements TreasureWorldInterface, Closeable {
+
+/**
+*  Maximum number of requests sent before reading their answers
+**/
+  public static final int WINDOW = TreasureWorldServer.BUFFER_FRAMES;
+
+  SocketChannel channel;
+  ByteBuffer in = ByteBuffer.allocate(WINDOW * TreasureWorldProtocol.FRAME_SIZE);
+  ByteBuffer out = ByteBuffer.allocate(WINDOW * TreasureWorldProtocol.FRAME_SIZE);
+/**
+*  Message reused for the step requests
+**/
+  TMessage stepRequest = new TMessage();
+
+
+ /**
+ *  Class constructor, that connects to the server
+ *
+ *  @param host host of the server
+ *  @param port port of the server
+ *  @throws IOException if the connection fails
+ **/
+  public TreasureWorldClient( String host, int port ) throws IOException {
+    channel = SocketChannel.open(new InetSocketAddress(host, port));
+    channel.socket().setTcpNoDelay(true);
+    in.flip();
+  }
+
+  @Override
+  public TMessage acceptMessage( TMessage msg, TMessage ans ) {
+    try {
+      sendMessage(msg);
+      flush();
+      return receiveMessage(ans);
+    } catch (IOException ex) {
+      throw new IllegalStateException("Error with the connection to the Treasure World", ex);
+    }
+  }
+
+  @Override
+  public StepAnswer step( int x, int y, StepAnswer ans ) {
+    try {
+      sendStep(x, y);
+      flush();
+      return receiveStep(ans);
+    } catch (IOException ex) {
+      throw new IllegalStateException("Error with the connection to the Treasure World", ex);
+    }
+  }
+
+ /**
+ *  Process a batched request for a sequence of steps, sending the step
+ *  requests in windows of WINDOW requests
+ *
+ *  @param   steps  the positions the agent moves to, in order
+ *  @return  the answers of all the steps, in the same order
+ **/
+  @Override
+  public StepAnswer[] replaySteps( List<Position> steps ) {
+    StepAnswer[] answers = new StepAnswer[steps.size()];
+    try {
+      for (int first = 0; first < answers.length; first += WINDOW) {
+        int last = Math.min(answers.length, first + WINDOW);
+        for (int i = first; i < last; i++) {
+          sendStep(steps.get(i).x, steps.get(i).y);
+        }
+        flush();
+        for (int i = first; i < last; i++) {
+          answers[i] = receiveStep(new StepAnswer());
+        }
+      }
+    } catch (IOException ex) {
+      throw new IllegalStateException("Error with the connection to the Treasure World", ex);
+    }
+    return answers;
+  }
+
+ /**
+ *  Add a message to the requests to send
+ *
+ *  @param msg the message to send
+ *  @throws IOException if the requests can not be sent
+ **/
+  public void sendMessage( TMessage msg ) throws IOException {
+    if (out.remaining() < TreasureWorldProtocol.FRAME_SIZE) {
+      flush();
+    }
+    TreasureWorldProtocol.putMessage(out, msg);
+  }
+
+ /**
+ *  Add a step request to (x,y) to the requests to send
+ *
+ *  @param x  x coordinate of the position to move to
+ *  @param y  y coordinate of the position to move to
+ *  @throws IOException if the requests can not be sent
+ **/
+  public void sendStep( int x, int y ) throws IOException {
+    sendMessage(stepRequest.set(MessageType.STEP, x, y, 0));
+  }
+
+ /**
+ *  Send all the requests added
+ *
+ *  @throws IOException if the requests can not be sent
+ **/
+  public void flush() throws IOException {
+    out.flip();
+    while (out.hasRemaining()) {
+      channel.write(out);
+    }
+    out.clear();
+  }
+
+ /**
+ *  Read the answer to the next request that is a message
+ *
+ *  @param ans message where the answer is stored
+ *  @return ans, with the answer read
+ *  @throws IOException if the answer can not be read
+ **/
+  public TMessage receiveMessage( TMessage ans ) throws IOException {
+    fill();
+    return TreasureWorldProtocol.getMessage(in, ans);
+  }
+
+ /**
+ *  Read the answer to the next request that is a step request
+ *
+ *  @param ans answer where the answer read is stored
+ *  @return ans, with the answer read
+ *  @throws IOException if the answer can not be read
+ **/
+  public StepAnswer receiveStep( StepAnswer ans ) throws IOException {
+    fill();
+    return TreasureWorldProtocol.getStepAnswer(in, ans);
+  }
+
+ /**
+ *  Close the connection to the server
+ **/
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  private void fill() throws IOException {
+    while (in.remaining() < TreasureWorldProtocol.FRAME_SIZE) {
+      in.compact();
+      int read = channel.read(in);
+      in.flip();
+      if (read < 0) {
+        throw new EOFException("Connection closed by the Treasure World server");
+      }
+    }
+  }
+
+}
@@ -11,11 +11,12 @@ import static java.lang.System.exit;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Iterator;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.sat4j.core.VecInt;
 
-public class TreasureWorldEnv {
+public class TreasureWorldEnv implements TreasureWorldInterface {
 /**
   X,Y position of Treasure and world dimension
 
@@ -25,7 +26,22 @@ public class TreasureWorldEnv {
   /**
     * The list of pirates
   **/
-  ArrayList<Position> listOfPirates;
+  List<Position> listOfPirates;
+
+  /**
+    * The positions of the pirates, to find them in constant time
+  **/
+  PirateIndex pirateIndex;
+
+  /**
+    * The object that receives the events of the environment, to show them
+  **/
+  TreasureWorldListener listener = ConsoleListener.INSTANCE;
+
+  /**
+    * Message reused to notify the listener of the batched step requests
+  **/
+  TMessage stepRequest = new TMessage();
 
 /**
 *  Class constructor
@@ -52,19 +68,31 @@ public class TreasureWorldEnv {
 
 
   /**
-  *   Load the list of pirates locations
+  *   Set the object that receives the events of the environment. To not
+  *   show the message of the pirates file, it must be called before
+  *   loadPiratesLocations (so, using the constructor without piratesFile)
+  *
+  *   @param eventListener the listener, NullListener.INSTANCE for no output
+  **/
+  public void setListener( TreasureWorldListener eventListener ) {
+    listener = eventListener;
+  }
+
+  /**
+  *   Load the list of pirates locations. The positions are parsed from the
+  *   file without reading the whole line, and stored as a PositionList.
   *
   *    @param piratesFile
   **/
   public void loadPiratesLocations( String piratesFile ) {
-    String[] piratesList;
-    String pirate = ""; // Prepare a list of movements to try with the FINDER Agent
     try {
-        BufferedReader br = new BufferedReader(new FileReader(piratesFile));
-        System.out.println("PIRATES FILE OPENED ...");
-        pirate = br.readLine();
-
-        br.close();
+        PositionReader reader = PositionReader.open(piratesFile);
+        listener.fileOpened(piratesFile, true);
+        try {
+            listOfPirates = reader.readAll(Integer.MAX_VALUE);
+        } finally {
+            reader.close();
+        }
     } catch (FileNotFoundException ex) {
         System.out.println("MSG.   => Pirates file not found");
         exit(1);
@@ -72,12 +100,17 @@ public class TreasureWorldEnv {
         Logger.getLogger(TreasureWorldEnv.class.getName()).log(Level.SEVERE, null, ex);
         exit(2);
     }
-    piratesList = pirate.split(" ");
-    listOfPirates = new ArrayList<Position>();
-    for (int i = 0 ; i < piratesList.length ; i++ ) {
-        String[] coords = piratesList[i].split(",");
-        listOfPirates.add(new Position(Integer.parseInt(coords[0]), Integer.parseInt(coords[1])));
-    }
+    pirateIndex = new PirateIndex(WorldDim, listOfPirates);
+  }
+
+  /**
+  *   Set the list of pirates locations, without reading it from a file
+  *
+  *    @param pirates the list of pirates locations
+  **/
+  public void setPiratesLocations( List<Position> pirates ) {
+    listOfPirates = pirates;
+    pirateIndex = new PirateIndex(WorldDim, listOfPirates);
   }
 
 
@@ -86,52 +119,101 @@ public class TreasureWorldEnv {
 * by returning an appropriate answer
 * This version only process answers to moveto and detectsat messages
 *
+* This is the string form of the protocol, that reads the message as a
+* TMessage and writes the answer back as an AMessage.
+*
 * @param   msg message sent by the Agent
 *
 * @return  a msg with the answer to return to the agent
 **/
    public AMessage acceptMessage( AMessage msg ) {
-       AMessage ans = new AMessage("voidmsg", "", "", "" );
-       msg.showMessage();
+       TMessage ans = acceptMessage( TMessage.fromAMessage(msg, new TMessage()), new TMessage() );
+       return ans.toAMessage();
+   }
 
-       if ( msg.getComp(0).equals("moveto") ) {
-           int nx = Integer.parseInt( msg.getComp(1) );
-           int ny = Integer.parseInt( msg.getComp(2) );
+/**
+* Process a message received by the TFinder agent, with the typed
+* protocol: moveto, detectsat and treasureup messages are answered,
+* any other message gets a VOIDMSG answer.
+*
+* @param   msg message sent by the Agent
+* @param   ans message where the answer is stored, so the agent can reuse it
+*
+* @return  ans, with the answer to return to the agent
+**/
+   @Override
+   public TMessage acceptMessage( TMessage msg, TMessage ans ) {
+       listener.messageReceived(msg);
+       int nx = msg.getX();
+       int ny = msg.getY();
 
+       switch (msg.getType()) {
+         case MOVETO:
            if (withinLimits(nx,ny))
-           {
-             int pirate = isPirateInMyCell( nx,ny );
-
-             ans = new AMessage("movedto",msg.getComp(1),msg.getComp(2),
-                                (new Integer(pirate)).toString()  );
-           }
+             ans.set(MessageType.MOVEDTO, nx, ny, isPirateInMyCell( nx,ny ));
            else
-             ans = new AMessage("notmovedto",msg.getComp(1),msg.getComp(2), "" );
-
-       } else {
-
-          // YOU MUST ANSWER ALSO TO THE OTHER MESSAGE TYPES:
-          //   ( "detectsat", "x" , "y", "" )
-          //   ( "treasureup", "x", "y", "" )
-
-          if (msg.getComp(0).equals("detectsat"))
-          {
-            int nx = Integer.parseInt(msg.getComp(1));
-            int ny = Integer.parseInt(msg.getComp(2));
-            String sensorReading = returnSensorReading(nx, ny);
-            ans = new AMessage(sensorReading, msg.getComp(1), msg.getComp(2), "");
-
-          }
-          else if (msg.getComp(0).equals("treasureup"))
-          {
-            int nx = Integer.parseInt(msg.getComp(1));
-            int ny = Integer.parseInt(msg.getComp(2));
-            String pirateAnswer = returnPirateAnswer(nx, ny);
-            ans = new AMessage(pirateAnswer, msg.getComp(1), msg.getComp(2), "");
-
-          }
-      }
-      return ans;
+             ans.set(MessageType.NOTMOVEDTO, nx, ny, 0);
+           break;
+
+         case DETECTSAT:
+           ans.set(MessageType.DETECTED, nx, ny, returnSensorReading(nx, ny));
+           break;
+
+         case TREASUREUP:
+           ans.set(MessageType.PIRATEANSWER, nx, ny, returnPirateAnswer(nx, ny) ? 1 : 0);
+           break;
+
+         default:
+           ans.set(MessageType.VOIDMSG, 0, 0, 0);
+           break;
+       }
+       return ans;
+   }
+
+
+/**
+* Process a batched step request of the TFinder agent: move to (x,y) and,
+* if the movement is possible, return in the same answer the pirate found
+* there, the metal detector reading and the answer of the pirate, if any.
+* So it is equivalent to the moveto, detectsat and treasureup messages of
+* a step, with a single request.
+*
+* @param   x  x coordinate of the position to move to
+* @param   y  y coordinate of the position to move to
+* @param   ans answer where the result is stored, so the agent can reuse it
+*
+* @return  ans, with the answer to return to the agent
+**/
+   @Override
+   public StepAnswer step( int x, int y, StepAnswer ans ) {
+       listener.messageReceived(stepRequest.set(MessageType.STEP, x, y, 0));
+       if (!withinLimits(x, y)) {
+         return ans.set(x, y, false, 0, -1, -1);
+       }
+       int pirate = isPirateInMyCell(x, y);
+       int treasureUp = -1;
+       if (pirate == 1) {
+         treasureUp = returnPirateAnswer(x, y) ? 1 : 0;
+       }
+       return ans.set(x, y, true, pirate, returnSensorReading(x, y), treasureUp);
+   }
+
+/**
+* Process a batched request for a sequence of steps, answering each one
+* as the step function does.
+*
+* @param   steps  the positions the agent moves to, in order
+*
+* @return  the answers of all the steps, in the same order
+**/
+   @Override
+   public StepAnswer[] replaySteps( List<Position> steps ) {
+       StepAnswer[] answers = new StepAnswer[steps.size()];
+       for (int i = 0; i < answers.length; i++) {
+         Position next = steps.get(i);
+         answers[i] = step(next.x, next.y, new StepAnswer());
+       }
+       return answers;
    }
 
 
@@ -145,15 +227,15 @@ public class TreasureWorldEnv {
   * @return 3  if the treasure is in some tile in the square of length 5 centered around the agent
   * @return 0  if the treasure is not in any of the locations indicated by the preavious readings 1, 2 and 3
   **/
-  private String returnSensorReading(int x, int y) {
+  private int returnSensorReading(int x, int y) {
       if (x == TreasureX && y == TreasureY) {
-  			return "1";
+  			return 1;
   		} else if ( (TreasureX-1 <= x && x <= TreasureX+1) && (TreasureY-1 <= y && y <= TreasureY+1) ) {
-  			return "2";
+  			return 2;
   		} else if ( (TreasureX-2 <= x && x <= TreasureX+2) && (TreasureY-2 <= y && y <= TreasureY+2) ) {
-  			return "3";
+  			return 3;
   		} else {
-  			return "0";
+  			return 0;
   		}
   }
 
@@ -162,14 +244,11 @@ public class TreasureWorldEnv {
   * @param x  x coordinate of agent position
   * @param y  y coordinate of agent position
   *
-  * @return yes  if the treasure is up of agent position
-  * @return no  if the treasure is down of agent position
+  * @return true  if the treasure is up of agent position (yes)
+  * @return false  if the treasure is down of agent position (no)
   **/
-  private String returnPirateAnswer(int x, int y) {
-      if (TreasureY > y) {
-  			return "yes";
-  		}
-  		return "no";
+  private boolean returnPirateAnswer(int x, int y) {
+      return TreasureY > y;
   }
 
   /**  Check if there is a pirate in position (x,y)
@@ -180,12 +259,7 @@ public class TreasureWorldEnv {
   * @return 1  if (x,y) contains a pirate, 0 otherwise
   **/
    public int isPirateInMyCell( int x, int y ) {
-     for (int i = 0 ; i < listOfPirates.size() ; i++ ) {
-       if (x == listOfPirates.get(i).x && y == listOfPirates.get(i).y) {
-         return 1;
-       }
-     }
-     return 0;
+     return pirateIndex.contains(x, y) ? 1 : 0;
    }
 
 
@@ -0,0 +1,40 @@
+package apryraz.tworld;
+
+import java.util.List;
+
+/**
+*  Interface to the Treasure World used by the TreasureFinder agent: the
+*  environment object itself (TreasureWorldEnv), or a client of an
+*  environment that runs in another process (TreasureWorldClient).
+**/
+public interface TreasureWorldInterface {
+
+  /**
+  *  Process a message sent by the agent, with the typed protocol
+  *
+  *  @param msg message sent by the agent
+  *  @param ans message where the answer is stored
+  *  @return ans, with the answer to return to the agent
+  **/
+  TMessage acceptMessage( TMessage msg, TMessage ans );
+
+  /**
+  *  Process a batched step request: move to (x,y), and get the pirate
+  *  found, the metal detector reading and the answer of the pirate, if any
+  *
+  *  @param x  x coordinate of the position to move to
+  *  @param y  y coordinate of the position to move to
+  *  @param ans answer where the result is stored
+  *  @return ans, with the answer to return to the agent
+  **/
+  StepAnswer step( int x, int y, StepAnswer ans );
+
+  /**
+  *  Process a batched request for a sequence of steps
+  *
+  *  @param steps  the positions the agent moves to, in order
+  *  @return the answers of all the steps, in the same order
+  **/
+  StepAnswer[] replaySteps( List<Position> steps );
+
+}
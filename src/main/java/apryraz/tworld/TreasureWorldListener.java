@@ -0,0 +1,88 @@
+package apryraz.tworld;
+
+/**
+*  Interface for the objects that receive the events produced by the
+*  TreasureFinder agent and the TreasureWorldEnv environment, to show them
+*  on screen, write a trace, or ignore them. The events only carry the
+*  values, so the listener is the only one that formats text if needed.
+**/
+public interface TreasureWorldListener {
+
+  /**
+  *  The agent has been created, with its initial state
+  *
+  *  @param state the initial state of the agent
+  **/
+  void agentStarted( TFState state );
+
+  /**
+  *  A file with steps or pirates has been opened
+  *
+  *  @param fileName name of the file
+  *  @param pirates  true for a pirates file, false for a steps file
+  **/
+  void fileOpened( String fileName, boolean pirates );
+
+  /**
+  *  The agent asks to move to (x,y)
+  **/
+  void moving( int x, int y );
+
+  /**
+  *  The agent has moved to (x,y)
+  *
+  *  @param pirate 1 if there is a pirate at (x,y), 0 otherwise
+  **/
+  void moved( int x, int y, int pirate );
+
+  /**
+  *  The agent has no more steps to perform
+  **/
+  void noMoreSteps();
+
+  /**
+  *  The agent uses the metal detector at (x,y)
+  **/
+  void detecting( int x, int y );
+
+  /**
+  *  The metal detector returned a reading, that is added as evidence
+  *
+  *  @param reading the reading returned: 0, 1, 2 or 3
+  **/
+  void detectorReading( int reading );
+
+  /**
+  *  The metal detector returned an answer that is not a valid reading, so
+  *  no evidence is added
+  *
+  *  @param answer the answer as it was received
+  **/
+  void invalidDetectorReading( String answer );
+
+  /**
+  *  The agent asks the pirate at (x,y) whether the Treasure is up
+  **/
+  void askingPirate( int x, int y );
+
+  /**
+  *  Only one position is possible for the Treasure
+  **/
+  void treasureLocated( int x, int y );
+
+  /**
+  *  The agent has finished a step
+  *
+  *  @param step  number of steps performed so far
+  *  @param state the state of the agent after the step
+  **/
+  void stepFinished( int step, TFState state );
+
+  /**
+  *  The environment has received a message
+  *
+  *  @param msg the message received
+  **/
+  void messageReceived( TMessage msg );
+
+}
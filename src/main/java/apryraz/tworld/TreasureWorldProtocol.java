@@ -0,0 +1,82 @@
+package apryraz.tworld;
+
+import java.nio.ByteBuffer;
+
+/**
+*  Binary form of the messages exchanged between TreasureWorldClient and
+*  TreasureWorldServer. Every request and every answer is a frame of
+*  FRAME_SIZE bytes, so no length is sent:
+*
+*    message:      type (1 byte, MessageType ordinal), x, y, value (int each)
+*    step answer:  STEP (1 byte), x, y (int each), moved, pirate, reading
+*                  and treasureUp (1 byte each)
+*
+*  A step request is a message of type STEP, and its answer is a step
+*  answer frame. Ints are big endian.
+**/
+public class TreasureWorldProtocol {
+
+  /** Size in bytes of every frame **/
+  public static final int FRAME_SIZE = 13;
+
+  static final MessageType[] TYPES = MessageType.values();
+
+  private TreasureWorldProtocol() {
+  }
+
+ /**
+ *  Write a message as a frame
+ *
+ *  @param buffer buffer with at least FRAME_SIZE bytes remaining
+ *  @param msg the message to write
+ **/
+  public static void putMessage( ByteBuffer buffer, TMessage msg ) {
+    buffer.put((byte) msg.getType().ordinal());
+    buffer.putInt(msg.getX()).putInt(msg.getY()).putInt(msg.getValue());
+  }
+
+ /**
+ *  Read a message frame. A type not known is read as VOIDMSG.
+ *
+ *  @param buffer buffer with at least FRAME_SIZE bytes remaining
+ *  @param out the message where the frame is stored
+ *  @return out, with the message read
+ **/
+  public static TMessage getMessage( ByteBuffer buffer, TMessage out ) {
+    int type = buffer.get();
+    int x = buffer.getInt(), y = buffer.getInt(), value = buffer.getInt();
+    if (type < 0 || type >= TYPES.length) {
+      return out.set(MessageType.VOIDMSG, 0, 0, 0);
+    }
+    return out.set(TYPES[type], x, y, value);
+  }
+
+ /**
+ *  Write a step answer as a frame
+ *
+ *  @param buffer buffer with at least FRAME_SIZE bytes remaining
+ *  @param ans the answer to write
+ **/
+  public static void putStepAnswer( ByteBuffer buffer, StepAnswer ans ) {
+    buffer.put((byte) MessageType.STEP.ordinal());
+    buffer.putInt(ans.getX()).putInt(ans.getY());
+    buffer.put((byte) (ans.isMoved() ? 1 : 0)).put((byte) ans.getPirate());
+    buffer.put((byte) ans.getReading()).put((byte) ans.getTreasureUp());
+  }
+
+ /**
+ *  Read a step answer frame
+ *
+ *  @param buffer buffer with at least FRAME_SIZE bytes remaining
+ *  @param out the answer where the frame is stored
+ *  @return out, with the answer read
+ **/
+  public static StepAnswer getStepAnswer( ByteBuffer buffer, StepAnswer out ) {
+    buffer.get();
+    int x = buffer.getInt(), y = buffer.getInt();
+    boolean moved = buffer.get() == 1;
+    int pirate = buffer.get(), reading = buffer.get(), treasureUp = buffer.get();
+    return out.set(x, y, moved, pirate, reading, treasureUp);
+  }
+
+}
@@ -0,0 +1,248 @@
+package apryraz.tworld;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+*  Server that runs a TreasureWorldEnv as a network service on localhost, so
+*  agents of other processes can use it with TreasureWorldClient.
+*
+*  A single thread serves all the connections with a non blocking selector,
+*  so the environment is only used by one thread. The requests of each
+*  connection are answered in order, and a client can send many requests
+*  before reading the answers (pipelining): while the answers are not read,
+*  the server stops reading requests from that connection.
+**/
+public class TreasureWorldServer implements Runnable, Closeable {
+
+/**
+*  Number of frames buffered for the requests and the answers of every
+*  connection
+**/
+  static final int BUFFER_FRAMES = 1024;
+
+  TreasureWorldEnv env;
+  ServerSocketChannel serverChannel;
+  Selector selector;
+  Thread thread;
+  volatile boolean running = true;
+/**
+*  Messages and answer reused for all the requests
+**/
+  TMessage request = new TMessage(), answer = new TMessage();
+  StepAnswer stepAnswer = new StepAnswer();
+
+
+ /**
+ *  Class constructor, that opens the server socket
+ *
+ *  @param environment the environment that answers the requests
+ *  @param port port of localhost to listen to, or 0 for any free port
+ *  @throws IOException if the socket can not be opened
+ **/
+  public TreasureWorldServer( TreasureWorldEnv environment, int port ) throws IOException {
+    env = environment;
+    selector = Selector.open();
+    serverChannel = ServerSocketChannel.open();
+    serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    serverChannel.configureBlocking(false);
+    serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+  }
+
+ /**
+ *  Returns the port the server listens to
+ *
+ *  @return the local port of the server socket
+ **/
+  public int getPort() {
+    return serverChannel.socket().getLocalPort();
+  }
+
+ /**
+ *  Serve the requests in a new daemon thread
+ **/
+  public void start() {
+    thread = new Thread(this, "tworld-server");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+ /**
+ *  Serve the requests in the current thread, until the server is closed
+ **/
+  @Override
+  public void run() {
+    try {
+      while (running) {
+        selector.select();
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          if (!key.isValid()) {
+            continue;
+          }
+          if (key.isAcceptable()) {
+            accept();
+          } else {
+            Connection connection = (Connection) key.attachment();
+            try {
+              connection.serve();
+            } catch (IOException ex) {
+              // The agent closed the connection
+              connection.close();
+            }
+          }
+        }
+      }
+    } catch (IOException ex) {
+      Logger.getLogger(TreasureWorldServer.class.getName()).log(Level.SEVERE, null, ex);
+    } finally {
+      for (SelectionKey key : selector.keys()) {
+        closeQuietly(key.channel());
+      }
+      closeQuietly(selector);
+    }
+  }
+
+ /**
+ *  Stop the server and close all the connections
+ **/
+  @Override
+  public void close() {
+    running = false;
+    selector.wakeup();
+    if (thread != null) {
+      try {
+        thread.join();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void accept() throws IOException {
+    SocketChannel channel = serverChannel.accept();
+    if (channel == null) {
+      return;
+    }
+    channel.configureBlocking(false);
+    channel.socket().setTcpNoDelay(true);
+    Connection connection = new Connection(channel);
+    connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+  }
+
+ /**
+ *  Answer a request frame, and write the answer frame
+ **/
+  void answer( ByteBuffer in, ByteBuffer out ) {
+    TreasureWorldProtocol.getMessage(in, request);
+    if (request.getType() == MessageType.STEP) {
+      env.step(request.getX(), request.getY(), stepAnswer);
+      TreasureWorldProtocol.putStepAnswer(out, stepAnswer);
+    } else {
+      env.acceptMessage(request, answer);
+      TreasureWorldProtocol.putMessage(out, answer);
+    }
+  }
+
+  private static void closeQuietly( Closeable closeable ) {
+    try {
+      closeable.close();
+    } catch (IOException ex) {
+      // Nothing else to do with it
+    }
+  }
+
+ /**
+ *  State of a connection with an agent: the requests read but not answered
+ *  yet, and the answers not sent yet
+ **/
+  class Connection {
+    SocketChannel channel;
+    SelectionKey key;
+    ByteBuffer in = ByteBuffer.allocate(BUFFER_FRAMES * TreasureWorldProtocol.FRAME_SIZE);
+    ByteBuffer out = ByteBuffer.allocate(BUFFER_FRAMES * TreasureWorldProtocol.FRAME_SIZE);
+
+    Connection( SocketChannel socketChannel ) {
+      channel = socketChannel;
+    }
+
+    /**
+    *  Read the requests available, and answer the complete ones and send
+    *  the answers while any of them makes progress: sending the answers
+    *  makes room to answer more requests
+    **/
+    void serve() throws IOException {
+      if (key.isReadable() && channel.read(in) < 0) {
+        close();
+        return;
+      }
+      boolean progress = true;
+      while (progress) {
+        in.flip();
+        int answered = 0;
+        while (in.remaining() >= TreasureWorldProtocol.FRAME_SIZE
+               && out.remaining() >= TreasureWorldProtocol.FRAME_SIZE) {
+          answer(in, out);
+          answered++;
+        }
+        in.compact();
+        out.flip();
+        int written = channel.write(out);
+        out.compact();
+        progress = answered > 0 || written > 0;
+      }
+
+      // With complete requests left, the answers buffer is full, so wait
+      // until the answers can be sent
+      int ops = 0;
+      if (in.hasRemaining()) {
+        ops |= SelectionKey.OP_READ;
+      }
+      if (out.position() > 0 || in.position() >= TreasureWorldProtocol.FRAME_SIZE) {
+        ops |= SelectionKey.OP_WRITE;
+      }
+      key.interestOps(ops);
+    }
+
+    void close() {
+      key.cancel();
+      closeQuietly(channel);
+    }
+  }
+
+  /**
+  *  Run a server with arguments:
+  *  arg[0] = dimension of the word
+  *  arg[1] = x coordinate of treasure position
+  *  arg[2] = y coordinate of treasure position
+  *  arg[3] = file name with list of pirate positions
+  *  arg[4] = port of localhost to listen to
+  **/
+  public static void main( String[] args ) throws IOException {
+    if (args == null || args.length < 5) {
+      System.out.println("Error: Not enough arguments given");
+      return;
+    }
+    TreasureWorldEnv env = new TreasureWorldEnv(Integer.parseInt(args[0]),
+            Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+    env.setListener(NullListener.INSTANCE);
+    env.loadPiratesLocations(args[3]);
+    TreasureWorldServer server = new TreasureWorldServer(env, Integer.parseInt(args[4]));
+    System.out.println("SERVER => listening on port " + server.getPort());
+    server.run();
+  }
+
+}
@@ -0,0 +1,72 @@
+package apryraz.tworld;
+
+/**
+*  Result of the verification of a scenario file: whether the states of the
+*  agent after every step are the expected ones, and if not, the first
+*  position where they differ
+**/
+public class VerificationResult {
+
+  String scenarioFile;
+/**
+*  Steps checked, and step (from 1) where the first difference was found,
+*  or 0 if all the states are the expected ones
+**/
+  int stepsChecked, failedStep;
+/**
+*  First different position (x,y), and expected value there ("?" or "X")
+**/
+  int x, y;
+  String expected;
+/**
+*  Error that stopped the verification, or null
+**/
+  Throwable error;
+
+  VerificationResult( String fileName ) {
+    scenarioFile = fileName;
+  }
+
+  public String getScenarioFile() {
+    return scenarioFile;
+  }
+
+  public boolean isPassed() {
+    return error == null && failedStep == 0;
+  }
+
+  public int getStepsChecked() {
+    return stepsChecked;
+  }
+
+  public int getFailedStep() {
+    return failedStep;
+  }
+
+  public int getX() {
+    return x;
+  }
+
+  public int getY() {
+    return y;
+  }
+
+  public String getExpected() {
+    return expected;
+  }
+
+  public Throwable getError() {
+    return error;
+  }
+
+  public String toString() {
+    if (error != null) {
+      return scenarioFile + " ERROR: " + error;
+    } else if (failedStep > 0) {
+      return scenarioFile + " FAILED at step " + failedStep + ": position (" + x + "," + y
+             + ") expected " + expected;
+    }
+    return scenarioFile + " OK, " + stepsChecked + " steps";
+  }
+
+}
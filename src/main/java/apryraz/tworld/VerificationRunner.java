@@ -0,0 +1,178 @@
+package apryraz.tworld;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+
+/**
+*  Runner that checks, in a bounded pool of threads, that the states of an
+*  agent after every step of some scenario files are the expected states
+*  saved in the files.
+*
+*  The expected states are not loaded: the state of the agent after each
+*  step is compared with the words of the expected state in the mapped file
+*  (see ScenarioFile.firstDifference), 64 positions at a time, stopping at
+*  the first difference.
+**/
+public class VerificationRunner {
+
+  ExecutorService executor;
+  SimulationRunner.EngineFactory engines;
+
+
+ /**
+ *  Class constructor, for agents with SatInferenceEngine
+ *
+ *  @param numThreads number of threads of the pool
+ **/
+  public VerificationRunner( int numThreads ) {
+    this(numThreads, SimulationRunner.SAT_ENGINES);
+  }
+
+ /**
+ *  Class constructor
+ *
+ *  @param numThreads number of threads of the pool
+ *  @param engineFactory factory of the inference engines of the agents
+ **/
+  public VerificationRunner( int numThreads, SimulationRunner.EngineFactory engineFactory ) {
+    if (numThreads < 1) {
+      throw new IllegalArgumentException("Number of threads must be at least 1: " + numThreads);
+    }
+    engines = engineFactory;
+    executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+      @Override
+      public Thread newThread( Runnable r ) {
+        Thread thread = new Thread(r, "tworld-verification");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+ /**
+ *  Verify all the scenario files, and wait for all of them to finish
+ *
+ *  @param scenarioFiles the names of the scenario files
+ *  @return the results, in the same order as the files
+ *  @throws InterruptedException if interrupted while waiting
+ **/
+  public List<VerificationResult> verify( List<String> scenarioFiles ) throws InterruptedException {
+    List<Callable<VerificationResult>> tasks = new ArrayList<Callable<VerificationResult>>(scenarioFiles.size());
+    for (final String fileName : scenarioFiles) {
+      tasks.add(new Callable<VerificationResult>() {
+        @Override
+        public VerificationResult call() {
+          return verify(fileName);
+        }
+      });
+    }
+    List<VerificationResult> results = new ArrayList<VerificationResult>(scenarioFiles.size());
+    for (Future<VerificationResult> future : executor.invokeAll(tasks)) {
+      try {
+        results.add(future.get());
+      } catch (ExecutionException ex) {
+        // verify keeps the errors in the result
+        throw new IllegalStateException(ex.getCause());
+      }
+    }
+    return results;
+  }
+
+ /**
+ *  Verify a scenario file in the current thread
+ *
+ *  @param fileName the name of the scenario file
+ *  @return the result of the verification
+ **/
+  public VerificationResult verify( String fileName ) {
+    VerificationResult result = new VerificationResult(fileName);
+    try {
+      ScenarioFile scenario = ScenarioFile.open(fileName);
+      try {
+        int wDim = scenario.getDim();
+        TreasureWorldEnv env = new TreasureWorldEnv(wDim, scenario.getTreasureX(), scenario.getTreasureY());
+        env.setListener(NullListener.INSTANCE);
+        env.setPiratesLocations(scenario.getPirates());
+        TreasureFinder agent = new TreasureFinder(wDim, engines.newEngine(wDim), NullListener.INSTANCE);
+        try {
+          agent.setEnvironment(env);
+          agent.setListOfSteps(scenario.getSteps());
+
+          for (int step = 0; step < scenario.getNumStates(); step++) {
+            agent.runNextStep();
+            result.stepsChecked++;
+            int diff = scenario.firstDifference(step, agent.getState());
+            if (diff >= 0) {
+              // Bit (i-1) * dim + (j-1) of the state is row i, column j
+              result.failedStep = step + 1;
+              result.y = diff / wDim + 1;
+              result.x = diff % wDim + 1;
+              result.expected = scenario.getState(step).get(result.y, result.x);
+              break;
+            }
+          }
+        } finally {
+          agent.close();
+        }
+      } finally {
+        scenario.close();
+      }
+    } catch (Exception ex) {
+      result.error = ex;
+    }
+    return result;
+  }
+
+ /**
+ *  Stop the threads of the runner. The runner can not be used after that.
+ **/
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  /**
+  *  Verify scenario files with arguments:
+  *  arg[0] = number of threads
+  *  arg[1] = inference engine: "sat" or "geometric"
+  *  arg[2..] = names of the scenario files
+  *
+  *  The result of every scenario that is not passed and the number of
+  *  scenarios passed are shown on screen. The exit status is 1 if some
+  *  scenario is not passed.
+  **/
+  public static void main( String[] args ) throws InterruptedException {
+    if (args == null || args.length < 3) {
+      System.out.println("Error: Not enough arguments given");
+      return;
+    }
+    SimulationRunner.EngineFactory engineFactory = args[1].equals("geometric")
+            ? SimulationRunner.GEOMETRIC_ENGINES : SimulationRunner.SAT_ENGINES;
+    VerificationRunner runner = new VerificationRunner(Integer.parseInt(args[0]), engineFactory);
+    List<String> files = new ArrayList<String>();
+    for (int i = 2; i < args.length; i++) {
+      files.add(args[i]);
+    }
+    List<VerificationResult> results = runner.verify(files);
+    runner.shutdown();
+    int passed = 0;
+    for (VerificationResult result : results) {
+      if (result.isPassed()) {
+        passed++;
+      } else {
+        System.out.println(result);
+      }
+    }
+    System.out.println("Passed " + passed + " of " + results.size() + " scenarios");
+    if (passed < results.size()) {
+      System.exit(1);
+    }
+  }
+
+}
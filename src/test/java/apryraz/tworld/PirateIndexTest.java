@@ -0,0 +1,59 @@
+package apryraz.tworld;
+
+import java.util.ArrayList;
+
+import org.junit.*;
+
+/**
+*  Class for testing the dense and sparse forms of PirateIndex
+**/
+public class PirateIndexTest {
+
+  ArrayList<Position> pirates() {
+    ArrayList<Position> pirates = new ArrayList<Position>();
+    pirates.add(new Position(1, 1));
+    pirates.add(new Position(7, 3));
+    pirates.add(new Position(7, 3));
+    pirates.add(new Position(0, 5));
+    return pirates;
+  }
+
+  @Test
+  public void denseTest() {
+    PirateIndex index = new PirateIndex(8, pirates());
+    Assert.assertNotNull(index.grid);
+    Assert.assertTrue(index.contains(1, 1));
+    Assert.assertTrue(index.contains(7, 3));
+    Assert.assertFalse(index.contains(3, 7));
+    Assert.assertTrue(index.contains(0, 5));
+    Assert.assertFalse(index.contains(9, 9));
+  }
+
+  @Test
+  public void sparseTest() {
+    // 10^6 x 10^6 world, so the grid is not allocated
+    PirateIndex index = new PirateIndex(1000000, pirates());
+    Assert.assertNull(index.grid);
+    for (int i = 1; i <= 1000; i++) {
+      index.add(i * 997, 1000000 - i);
+    }
+    Assert.assertTrue(index.contains(7, 3));
+    Assert.assertFalse(index.contains(3, 7));
+    Assert.assertTrue(index.contains(0, 5));
+    Assert.assertTrue(index.contains(500 * 997, 1000000 - 500));
+    Assert.assertFalse(index.contains(500 * 997, 1000000 - 501));
+  }
+
+  @Test
+  public void emptyKeyTest() {
+    // The key of (Integer.MIN_VALUE, 0) is the one of the empty slots
+    PirateIndex index = new PirateIndex(1000000, pirates());
+    Assert.assertFalse(index.contains(Integer.MIN_VALUE, 0));
+    index.add(Integer.MIN_VALUE, 0);
+    Assert.assertTrue(index.contains(Integer.MIN_VALUE, 0));
+    Assert.assertEquals(3, index.size);
+    Assert.assertTrue(index.contains(0, 5));
+    Assert.assertFalse(new PirateIndex(8, pirates()).contains(Integer.MIN_VALUE, 0));
+  }
+
+}
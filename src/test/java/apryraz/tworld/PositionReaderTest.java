@@ -0,0 +1,51 @@
+package apryraz.tworld;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import org.junit.*;
+
+/**
+*  Class for testing the streaming parser of steps and pirates files
+**/
+public class PositionReaderTest {
+
+  PositionReader reader( String text ) {
+    return new PositionReader(Channels.newChannel(new ByteArrayInputStream(text.getBytes())));
+  }
+
+  @Test
+  public void longLineTest() throws IOException {
+    // Line longer than the buffer of the reader, followed by a second line
+    StringBuilder line = new StringBuilder();
+    for (int i = 0; i < 20000; i++) {
+      line.append(i).append(',').append(-i).append(' ');
+    }
+    line.append("\r\n1,1 2,2\n");
+    PositionList positions = reader(line.toString()).readAll(Integer.MAX_VALUE);
+    Assert.assertEquals(20000, positions.size());
+    Assert.assertEquals(12345, positions.getX(12345));
+    Assert.assertEquals(-19999, positions.getY(19999));
+
+    positions = reader(line.toString()).readAll(5);
+    Assert.assertEquals(5, positions.size());
+    Assert.assertEquals(4, positions.get(4).x);
+  }
+
+  @Test
+  public void stepsFileTest() throws IOException {
+    PositionReader reader = PositionReader.open("tests/steps1.txt");
+    PositionList positions = reader.readAll(5);
+    reader.close();
+    Assert.assertEquals(5, positions.size());
+    Assert.assertEquals(1, positions.getX(0));
+    Assert.assertEquals(1, positions.getY(0));
+  }
+
+  @Test(expected = IOException.class)
+  public void invalidPositionTest() throws IOException {
+    reader("1,2 3;4").readAll(Integer.MAX_VALUE);
+  }
+
+}
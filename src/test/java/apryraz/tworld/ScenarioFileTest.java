@@ -0,0 +1,118 @@
+package apryraz.tworld;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import org.sat4j.specs.*;
+
+/**
+*  Class for testing the binary scenario files, converted from the text
+*  files of the tests
+**/
+public class ScenarioFileTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void convertTest() throws IOException, ContradictionException, TimeoutException {
+    String fileName = new File(folder.getRoot(), "scenario4.twsc").getPath();
+    ScenarioFile.convert(fileName, 8, 3, 7, 6, "tests/steps4.txt", "tests/pirates4.txt", "tests/states4.txt");
+
+    ScenarioFile scenario = ScenarioFile.open(fileName);
+    try {
+      Assert.assertEquals(8, scenario.getDim());
+      Assert.assertEquals(3, scenario.getTreasureX());
+      Assert.assertEquals(7, scenario.getTreasureY());
+      Assert.assertEquals(6, scenario.getSteps().size());
+      Assert.assertEquals(6, scenario.getNumStates());
+
+      // Running the steps of the scenario gives the expected states
+      TreasureWorldEnv EnvAgent = new TreasureWorldEnv(8, 3, 7);
+      EnvAgent.setListener(NullListener.INSTANCE);
+      EnvAgent.setPiratesLocations(scenario.getPirates());
+      TreasureFinder TAgent = new TreasureFinder(8, new SatInferenceEngine(8), NullListener.INSTANCE);
+      TAgent.setEnvironment(EnvAgent);
+      TAgent.setListOfSteps(scenario.getSteps());
+      for (int i = 0; i < 6; i++) {
+        TAgent.runNextStep();
+        Assert.assertEquals(scenario.getState(i), TAgent.getState());
+      }
+    } finally {
+      scenario.close();
+    }
+  }
+
+  @Test
+  public void verifyTest() throws IOException, InterruptedException {
+    String[][] tests = {
+      {"4", "3", "3", "5", "1"}, {"6", "4", "4", "5", "2"},
+      {"7", "5", "4", "7", "3"}, {"8", "3", "7", "6", "4"}
+    };
+    List<String> files = new ArrayList<String>();
+    for (String[] t : tests) {
+      String fileName = new File(folder.getRoot(), "scenario" + t[4] + ".twsc").getPath();
+      ScenarioFile.convert(fileName, Integer.parseInt(t[0]), Integer.parseInt(t[1]), Integer.parseInt(t[2]),
+                           Integer.parseInt(t[3]), "tests/steps" + t[4] + ".txt",
+                           "tests/pirates" + t[4] + ".txt", "tests/states" + t[4] + ".txt");
+      files.add(fileName);
+    }
+    // A scenario where the expected state after the first step is wrong:
+    // position (1,1) is "X" after reading the detector there
+    String wrongFile = new File(folder.getRoot(), "wrong.twsc").getPath();
+    PositionList steps = new PositionList(1);
+    steps.add(1, 1);
+    ScenarioFile.write(wrongFile, 5, 4, 4, new PositionList(1), steps,
+                       Arrays.asList(new TFState(5)));
+    files.add(wrongFile);
+
+    SimulationRunner.EngineFactory[] factories = {
+      SimulationRunner.SAT_ENGINES, SimulationRunner.GEOMETRIC_ENGINES
+    };
+    for (SimulationRunner.EngineFactory factory : factories) {
+      VerificationRunner runner = new VerificationRunner(2, factory);
+      try {
+        List<VerificationResult> results = runner.verify(files);
+        for (int i = 0; i < tests.length; i++) {
+          Assert.assertTrue(results.get(i).toString(), results.get(i).isPassed());
+          Assert.assertEquals(Integer.parseInt(tests[i][3]), results.get(i).getStepsChecked());
+        }
+        VerificationResult wrong = results.get(tests.length);
+        Assert.assertFalse(wrong.isPassed());
+        Assert.assertNull(wrong.getError());
+        Assert.assertEquals(1, wrong.getFailedStep());
+        Assert.assertEquals(1, wrong.getX());
+        Assert.assertEquals(1, wrong.getY());
+        Assert.assertEquals("?", wrong.getExpected());
+      } finally {
+        runner.shutdown();
+      }
+    }
+  }
+
+  @Test
+  public void writeTest() throws IOException {
+    String fileName = new File(folder.getRoot(), "written.twsc").getPath();
+    PositionList steps = new PositionList(4);
+    steps.add(1, 1);
+    steps.add(2, 3);
+    TFState state = new TFState(5);
+    state.set(2, 3, "X");
+    ScenarioFile.write(fileName, 5, 4, 4, new PositionList(1), steps, Arrays.asList(state));
+
+    ScenarioFile scenario = ScenarioFile.open(fileName);
+    try {
+      Assert.assertEquals(0, scenario.getPirates().size());
+      Assert.assertEquals(3, scenario.getSteps().get(1).y);
+      Assert.assertEquals(state, scenario.getState(0));
+    } finally {
+      scenario.close();
+    }
+  }
+
+}
@@ -0,0 +1,107 @@
+package apryraz.tworld;
+
+import java.io.File;
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+/**
+*  Class for testing the generator of scenarios
+**/
+public class ScenarioGeneratorTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void reproducibleTest() {
+    for (ScenarioGenerator.PirateLayout layout : ScenarioGenerator.PirateLayout.values()) {
+      ScenarioGenerator generator = new ScenarioGenerator(20, 42L);
+      generator.setPirates(0.1, layout);
+      SimulationScenario first = generator.generate("first", 50);
+      SimulationScenario second = generator.generate("second", 50);
+
+      Assert.assertEquals(first.TreasureX, second.TreasureX);
+      Assert.assertEquals(first.TreasureY, second.TreasureY);
+      assertSamePositions(first.steps, second.steps);
+      assertSamePositions(first.pirates, second.pirates);
+
+      // 10% of the positions, all different and in the world
+      Assert.assertEquals(40, first.pirates.size());
+      BitSet seen = new BitSet();
+      for (Position pirate : first.pirates) {
+        Assert.assertTrue(pirate.x >= 1 && pirate.x <= 20 && pirate.y >= 1 && pirate.y <= 20);
+        int index = (pirate.x - 1) * 20 + (pirate.y - 1);
+        Assert.assertFalse(seen.get(index));
+        seen.set(index);
+      }
+    }
+  }
+
+  @Test
+  public void walkTest() {
+    ScenarioGenerator generator = new ScenarioGenerator(5, 1L);
+
+    // The spiral starts at the center and covers the world once
+    generator.setWalk(ScenarioGenerator.Walk.SPIRAL, 1);
+    List<Position> steps = generator.generate("spiral", 25).steps;
+    Assert.assertEquals(3, steps.get(0).x);
+    Assert.assertEquals(3, steps.get(0).y);
+    BitSet seen = new BitSet();
+    for (Position step : steps) {
+      seen.set((step.x - 1) * 5 + (step.y - 1));
+    }
+    Assert.assertEquals(25, seen.cardinality());
+
+    // The second row goes from right to left
+    generator.setWalk(ScenarioGenerator.Walk.BOUSTROPHEDON, 2);
+    steps = generator.generate("boustrophedon", 6).steps;
+    Assert.assertEquals(5, steps.get(2).x);
+    Assert.assertEquals(5, steps.get(3).x);
+    Assert.assertEquals(3, steps.get(3).y);
+    Assert.assertEquals(3, steps.get(4).x);
+
+    // The random walk moves to a neighbour position inside the world
+    generator.setWalk(ScenarioGenerator.Walk.RANDOM, 1);
+    steps = generator.generate("random", 200).steps;
+    for (int s = 1; s < steps.size(); s++) {
+      Position from = steps.get(s - 1), to = steps.get(s);
+      Assert.assertEquals(1, Math.abs(to.x - from.x) + Math.abs(to.y - from.y));
+      Assert.assertTrue(to.x >= 1 && to.x <= 5 && to.y >= 1 && to.y <= 5);
+    }
+  }
+
+  @Test
+  public void textFilesTest() throws Exception {
+    ScenarioGenerator generator = new ScenarioGenerator(10, 7L);
+    generator.setPirates(0.05, ScenarioGenerator.PirateLayout.CLUSTERED);
+    generator.setWalk(ScenarioGenerator.Walk.SPIRAL, 2);
+    SimulationScenario scenario = generator.generate("text", 20);
+    String prefix = new File(folder.getRoot(), "gen").getPath();
+    ScenarioGenerator.writePositions(prefix + "steps.txt", scenario.steps);
+    ScenarioGenerator.writePositions(prefix + "pirates.txt", scenario.pirates);
+    ScenarioGenerator.writeStates(prefix + "states.txt", scenario, SimulationRunner.GEOMETRIC_ENGINES);
+
+    // The states written with the geometric engine are the states of the
+    // SAT engine, reading the text files back
+    String fileName = prefix + ".twsc";
+    ScenarioFile.convert(fileName, 10, scenario.TreasureX, scenario.TreasureY, 20,
+                         prefix + "steps.txt", prefix + "pirates.txt", prefix + "states.txt");
+    VerificationRunner runner = new VerificationRunner(1);
+    VerificationResult result = runner.verify(fileName);
+    runner.shutdown();
+    Assert.assertTrue(result.toString(), result.isPassed());
+    Assert.assertEquals(20, result.getStepsChecked());
+  }
+
+  private void assertSamePositions( List<Position> expected, List<Position> actual ) {
+    Assert.assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      Assert.assertEquals(expected.get(i).x, actual.get(i).x);
+      Assert.assertEquals(expected.get(i).y, actual.get(i).y);
+    }
+  }
+
+}
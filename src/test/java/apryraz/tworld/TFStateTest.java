@@ -0,0 +1,67 @@
+package apryraz.tworld;
+
+import org.junit.*;
+
+/**
+*  Class for testing the bulk operations of TFState
+**/
+public class TFStateTest {
+
+  @Test
+  public void candidatesTest() {
+    // 9x9 world, so the state uses two words and the last one is partial
+    TFState state = new TFState(9);
+    Assert.assertEquals(81, state.countCandidates());
+    for (int j = 1; j <= 9; j++) {
+      for (int i = 1; i <= 9; i++) {
+        if (i != 8 || j != 3) {
+          state.set(i, j, "X");
+        }
+      }
+    }
+    state.set(2, 2, "?");
+    Assert.assertEquals(2, state.countCandidates());
+    Assert.assertEquals("?", state.get(8, 3));
+    Assert.assertEquals("X", state.get(8, 4));
+
+    int first = state.nextCandidate(0);
+    Assert.assertEquals(1 * 9 + 1, first);
+    int second = state.nextCandidate(first + 1);
+    Assert.assertEquals(7 * 9 + 2, second);
+    Assert.assertEquals(-1, state.nextCandidate(second + 1));
+  }
+
+  @Test
+  public void rowsTest() {
+    // Rows of 9 positions, so rows 7 to 8 go across the first word
+    TFState state = new TFState(9);
+    state.setImpossibleRows(7, 8);
+    Assert.assertEquals(81 - 18, state.countCandidates());
+    Assert.assertEquals("?", state.get(6, 9));
+    Assert.assertEquals("X", state.get(7, 1));
+    Assert.assertEquals("X", state.get(8, 9));
+    Assert.assertEquals("?", state.get(9, 1));
+    state.setImpossibleRows(9, 9);
+    state.setImpossibleRows(2, 2);
+    state.setImpossibleRows(3, 1);
+    Assert.assertEquals(81 - 36, state.countCandidates());
+    Assert.assertEquals(9 * 2, state.nextCandidate(9));
+  }
+
+  @Test
+  public void equalsTest() {
+    TFState state1 = new TFState(9);
+    TFState state2 = new TFState(9);
+    Assert.assertTrue(state1.equals(state2));
+    Assert.assertEquals(state1.hashCode(), state2.hashCode());
+    Assert.assertEquals(-1, state1.firstDifference(state2));
+
+    state2.set(9, 9, "X");
+    Assert.assertFalse(state1.equals(state2));
+    Assert.assertEquals(80, state1.firstDifference(state2));
+    state2.set(9, 9, "?");
+    Assert.assertTrue(state1.equals(state2));
+    Assert.assertFalse(state1.equals(new TFState(8)));
+  }
+
+}
@@ -0,0 +1,60 @@
+package apryraz.tworld;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.*;
+
+/**
+*  Class for testing the conversion between the typed and the string messages
+**/
+public class TMessageTest {
+
+  @Test
+  public void roundTripTest() {
+    TMessage[] msgs = {
+      new TMessage(MessageType.MOVETO, 3, 4, 0),
+      new TMessage(MessageType.DETECTSAT, 1, 9, 0),
+      new TMessage(MessageType.TREASUREUP, 7, 2, 0),
+      new TMessage(MessageType.MOVEDTO, 5, 5, 1),
+      new TMessage(MessageType.NOTMOVEDTO, 0, 6, 0),
+      new TMessage(MessageType.DETECTED, 2, 3, 3),
+      new TMessage(MessageType.PIRATEANSWER, 4, 8, 1),
+      new TMessage(MessageType.PIRATEANSWER, 4, 8, 0)
+    };
+    TMessage read = new TMessage();
+    for (TMessage msg : msgs) {
+      TMessage.fromAMessage(msg.toAMessage(), read);
+      Assert.assertEquals(msg.getType(), read.getType());
+      Assert.assertEquals(msg.getX(), read.getX());
+      Assert.assertEquals(msg.getY(), read.getY());
+      Assert.assertEquals(msg.getValue(), read.getValue());
+    }
+  }
+
+  @Test
+  public void invalidReadingTest() {
+    TMessage read = TMessage.fromAMessage(new AMessage("4", "1", "1", ""), new TMessage());
+    Assert.assertEquals(MessageType.VOIDMSG, read.getType());
+    read = TMessage.fromAMessage(new AMessage("unknown", "", "", ""), read);
+    Assert.assertEquals(MessageType.VOIDMSG, read.getType());
+  }
+
+  @Test
+  public void invalidReadingListenerTest() throws Exception {
+    // The agent reports an invalid reading as it was received
+    final List<String> answers = new ArrayList<String>();
+    TreasureFinder agent = new TreasureFinder(4, new GeometricInferenceEngine(4), new NullListener() {
+      @Override
+      public void invalidDetectorReading( String answer ) {
+        answers.add(answer);
+      }
+    });
+    agent.processDetectorSensorAnswer(new AMessage("4", "1", "1", ""));
+    agent.processDetectorSensorAnswer(new TMessage().set(MessageType.DETECTED, 1, 1, 7));
+    agent.processDetectorSensorAnswer(new TMessage().set(MessageType.NOTMOVEDTO, 1, 1, 0));
+    Assert.assertEquals(Arrays.asList("4", "7", "notmovedto"), answers);
+  }
+
+}
@@ -1,14 +1,21 @@
 package apryraz.tworld;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
 import static java.lang.System.exit;
 
 import org.sat4j.specs.*;
@@ -127,7 +134,28 @@ public class TreasureFinderTest {
       // You should make TreasureFinder and TreasureWorldEnv objects to  test.
       // Then load sequence of target states, load sequence of steps into the bAgent
       // and then test the sequence calling testMakeSimpleStep once for each step.
-     TreasureFinder TAgent = new TreasureFinder(wDim);
+     testMakeSeqOfSteps(new TreasureFinder(wDim), wDim, tX, tY, numSteps,
+                        fileSteps, fileStates, filePirates);
+  }
+
+  /**
+  *   Same as the previous function, but with an agent already created, so
+  *   the agent can be configured before running the sequence of steps.
+  *
+  *   @param TAgent the TreasureFinder agent to test
+  *   @param wDim the dimension of world
+  *   @param tX x coordinate of Treasure position
+  *   @param tY y coordinate of Treasure position
+  *   @param numSteps num of steps to perform
+  *   @param fileSteps file name with sequence of steps to perform
+  *   @param fileStates file name with sequence of target states
+  *   @param filePirates file name with list of pirate positions
+  *
+  **/
+  public void testMakeSeqOfSteps( TreasureFinder TAgent, int wDim, int tX, int tY,
+                                  int numSteps, String fileSteps, String fileStates,
+                                  String filePirates )
+       throws   IOException,  ContradictionException, TimeoutException {
      // load information about the World into the EnvAgent
      TreasureWorldEnv EnvAgent = new TreasureWorldEnv(wDim, tX, tY, filePirates);
      // Load list of states
@@ -175,4 +203,504 @@ public class TreasureFinderTest {
     testMakeSeqOfSteps(8, 3, 7, 6, "tests/steps4.txt", "tests/states4.txt", "tests/pirates4.txt");
   }
 
+  @Test
+  public void TWorldModelPruningTest()   throws
+          IOException,  ContradictionException, TimeoutException {
+    MetricsRegistry plainMetrics = new MetricsRegistry();
+    TreasureFinder plain = new TreasureFinder(8, new SatInferenceEngine(8));
+    plain.setMetrics(plainMetrics);
+    testMakeSeqOfSteps(plain, 8, 3, 7, 6, "tests/steps4.txt", "tests/states4.txt", "tests/pirates4.txt");
+    SatInferenceEngine engine = new SatInferenceEngine(8);
+    engine.setModelPruning(true);
+    MetricsRegistry pruningMetrics = new MetricsRegistry();
+    TreasureFinder pruning = new TreasureFinder(8, engine);
+    pruning.setMetrics(pruningMetrics);
+    testMakeSeqOfSteps(pruning, 8, 3, 7, 6, "tests/steps4.txt", "tests/states4.txt", "tests/pirates4.txt");
+    // Every model settles many possible positions, so far fewer questions
+    // are asked to the solver for the same conclusions
+    Assert.assertTrue(pruningMetrics.snapshot().getSatCalls() * 2 < plainMetrics.snapshot().getSatCalls());
+    engine = new SatInferenceEngine(7);
+    engine.setModelPruning(true);
+    testMakeSeqOfSteps(new TreasureFinder(7, engine), 7, 5, 4, 7, "tests/steps3.txt", "tests/states3.txt", "tests/pirates3.txt");
+  }
+
+  @Test
+  public void TWorldRebuildSolverTest()   throws
+          IOException,  ContradictionException, TimeoutException {
+    SatInferenceEngine engine = new SatInferenceEngine(8);
+    engine.setRebuildInterval(1);
+    testMakeSeqOfSteps(new TreasureFinder(8, engine), 8, 3, 7, 6, "tests/steps4.txt", "tests/states4.txt", "tests/pirates4.txt");
+    engine = new SatInferenceEngine(4);
+    engine.setRebuildInterval(2);
+    testMakeSeqOfSteps(new TreasureFinder(4, engine), 4, 3, 3, 5, "tests/steps1.txt", "tests/states1.txt", "tests/pirates1.txt");
+  }
+
+  @Test
+  public void TWorldSingleVariableSetTest()   throws
+          IOException,  ContradictionException, TimeoutException {
+    testMakeSeqOfSteps(new TreasureFinder(6, new SatInferenceEngine(6, true)), 6, 4, 4, 5, "tests/steps2.txt", "tests/states2.txt", "tests/pirates2.txt");
+    SatInferenceEngine engine = new SatInferenceEngine(8, true);
+    engine.setModelPruning(true);
+    engine.setRebuildInterval(3);
+    testMakeSeqOfSteps(new TreasureFinder(8, engine), 8, 3, 7, 6, "tests/steps4.txt", "tests/states4.txt", "tests/pirates4.txt");
+  }
+
+  @Test
+  public void TWorldParallelTest()   throws
+          IOException,  ContradictionException, TimeoutException {
+    TreasureFinder TAgent = new TreasureFinder(7, new ParallelSatInferenceEngine(7, 3));
+    try {
+      testMakeSeqOfSteps(TAgent, 7, 5, 4, 7, "tests/steps3.txt", "tests/states3.txt", "tests/pirates3.txt");
+    } finally {
+      TAgent.close();
+    }
+    ParallelSatInferenceEngine engine = new ParallelSatInferenceEngine(8, 4, true);
+    engine.setModelPruning(true);
+    TAgent = new TreasureFinder(8, engine);
+    try {
+      testMakeSeqOfSteps(TAgent, 8, 3, 7, 6, "tests/steps4.txt", "tests/states4.txt", "tests/pirates4.txt");
+    } finally {
+      TAgent.close();
+    }
+  }
+
+  @Test
+  public void TWorldTraceTest()   throws
+          IOException,  ContradictionException, TimeoutException {
+    StringWriter trace = new StringWriter();
+    TreasureFinder TAgent = new TreasureFinder(4, new SatInferenceEngine(4), new JsonTraceListener(trace));
+    testMakeSeqOfSteps(TAgent, 4, 3, 3, 5, "tests/steps1.txt", "tests/states1.txt", "tests/pirates1.txt");
+    Assert.assertTrue(trace.toString().startsWith("{\"event\":\"start\",\"dim\":4}\n"));
+    Assert.assertTrue(trace.toString().endsWith("{\"event\":\"located\",\"x\":3,\"y\":3}\n"
+                                               + "{\"event\":\"step\",\"step\":5,\"possible\":1}\n"));
+
+    // File names are escaped as any other string of the trace
+    trace = new StringWriter();
+    new JsonTraceListener(trace).fileOpened("a\"b\tc", true);
+    Assert.assertEquals("{\"event\":\"piratesfile\",\"name\":\"a\\\"b\\u0009c\"}\n", trace.toString());
+  }
+
+  @Test
+  public void TWorldGeometricTest()   throws
+          IOException,  ContradictionException, TimeoutException {
+    testMakeSeqOfSteps(new TreasureFinder(4, new GeometricInferenceEngine(4)), 4, 3, 3, 5, "tests/steps1.txt", "tests/states1.txt", "tests/pirates1.txt");
+    testMakeSeqOfSteps(new TreasureFinder(6, new GeometricInferenceEngine(6)), 6, 4, 4, 5, "tests/steps2.txt", "tests/states2.txt", "tests/pirates2.txt");
+    testMakeSeqOfSteps(new TreasureFinder(7, new GeometricInferenceEngine(7)), 7, 5, 4, 7, "tests/steps3.txt", "tests/states3.txt", "tests/pirates3.txt");
+    testMakeSeqOfSteps(new TreasureFinder(8, new GeometricInferenceEngine(8)), 8, 3, 7, 6, "tests/steps4.txt", "tests/states4.txt", "tests/pirates4.txt");
+  }
+
+  @Test
+  public void TWorldBatchStepsTest()   throws
+          IOException,  ContradictionException, TimeoutException {
+    // Steps answered with a single request must give the same final state
+    TreasureFinder TAgent = new TreasureFinder(8, new SatInferenceEngine(8), NullListener.INSTANCE);
+    TreasureWorldEnv EnvAgent = new TreasureWorldEnv(8, 3, 7);
+    EnvAgent.setListener(NullListener.INSTANCE);
+    EnvAgent.loadPiratesLocations("tests/pirates4.txt");
+    TAgent.setEnvironment(EnvAgent);
+    TAgent.loadListOfSteps(6, "tests/steps4.txt");
+    ArrayList<TFState> seqOfStates = loadListOfTargetStates(8, 6, "tests/states4.txt");
+    Assert.assertEquals(6, TAgent.runSteps(6));
+    Assert.assertTrue(seqOfStates.get(5).equals(TAgent.getState()));
+
+    // A step answer holds the same information as the separate messages
+    StepAnswer ans = EnvAgent.step(4, 6, new StepAnswer());
+    TMessage msg = EnvAgent.acceptMessage(new TMessage(MessageType.DETECTSAT, 4, 6, 0), new TMessage());
+    Assert.assertTrue(ans.isMoved());
+    Assert.assertEquals(msg.getValue(), ans.getReading());
+    Assert.assertFalse(EnvAgent.step(9, 1, ans).isMoved());
+  }
+
+  @Test
+  public void TWorldRemoteTest()   throws
+          IOException,  ContradictionException, TimeoutException {
+    TreasureWorldEnv EnvAgent = new TreasureWorldEnv(7, 5, 4);
+    EnvAgent.setListener(NullListener.INSTANCE);
+    EnvAgent.loadPiratesLocations("tests/pirates3.txt");
+    TreasureWorldServer server = new TreasureWorldServer(EnvAgent, 0);
+    server.start();
+    try {
+      ArrayList<TFState> seqOfStates = loadListOfTargetStates(7, 7, "tests/states3.txt");
+      // One request for each step
+      TreasureWorldClient client = new TreasureWorldClient("localhost", server.getPort());
+      TreasureFinder TAgent = new TreasureFinder(7, new SatInferenceEngine(7), NullListener.INSTANCE);
+      TAgent.setEnvironment(client);
+      TAgent.loadListOfSteps(7, "tests/steps3.txt");
+      for (int i = 0; i < 7; i++) {
+        testMakeSimpleStep(TAgent, seqOfStates.get(i));
+      }
+      client.close();
+
+      // All the steps pipelined
+      client = new TreasureWorldClient("localhost", server.getPort());
+      TAgent = new TreasureFinder(7, new SatInferenceEngine(7), NullListener.INSTANCE);
+      TAgent.setEnvironment(client);
+      TAgent.loadListOfSteps(7, "tests/steps3.txt");
+      TAgent.runSteps(7);
+      Assert.assertTrue(seqOfStates.get(6).equals(TAgent.getState()));
+
+      // More requests than the window of the client
+      ArrayList<Position> steps = new ArrayList<Position>();
+      for (int i = 0; i < 3 * TreasureWorldClient.WINDOW; i++) {
+        steps.add(new Position(i % 9, i % 7 + 1));
+      }
+      StepAnswer[] answers = client.replaySteps(steps);
+      StepAnswer local = new StepAnswer();
+      for (int i = 0; i < answers.length; i++) {
+        EnvAgent.step(steps.get(i).x, steps.get(i).y, local);
+        Assert.assertEquals(local.isMoved(), answers[i].isMoved());
+        Assert.assertEquals(local.getReading(), answers[i].getReading());
+        Assert.assertEquals(local.getTreasureUp(), answers[i].getTreasureUp());
+      }
+      client.close();
+    } finally {
+      server.close();
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void TWorldRemotePipelineTest()   throws
+          IOException, InterruptedException {
+    TreasureWorldEnv EnvAgent = new TreasureWorldEnv(7, 5, 4);
+    EnvAgent.setListener(NullListener.INSTANCE);
+    EnvAgent.loadPiratesLocations("tests/pirates3.txt");
+    TreasureWorldServer server = new TreasureWorldServer(EnvAgent, 0);
+    server.start();
+    final Socket socket = new Socket();
+    try {
+      // A small receive buffer, so the server can only write a few answers
+      // at a time and its answers buffer stays partly full
+      socket.setReceiveBufferSize(2048);
+      socket.connect(new InetSocketAddress("localhost", server.getPort()));
+      socket.setSoTimeout(10000);
+      // Many more requests than the buffers of the server, all of them sent
+      // before reading any answer, so the answers fill the socket buffers
+      final int numRequests = 200 * TreasureWorldServer.BUFFER_FRAMES;
+      Thread writer = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          ByteBuffer frames = ByteBuffer.allocate(numRequests * TreasureWorldProtocol.FRAME_SIZE);
+          TMessage request = new TMessage();
+          for (int i = 0; i < numRequests; i++) {
+            TreasureWorldProtocol.putMessage(frames, request.set(MessageType.STEP, i % 7 + 1, i % 5 + 1, 0));
+          }
+          try {
+            socket.getOutputStream().write(frames.array());
+            socket.getOutputStream().flush();
+          } catch (IOException ex) {
+            // The reader fails too
+          }
+        }
+      });
+      writer.setDaemon(true);
+      writer.start();
+      writer.join(500);
+
+      DataInputStream in = new DataInputStream(socket.getInputStream());
+      byte[] frame = new byte[TreasureWorldProtocol.FRAME_SIZE];
+      StepAnswer answer = new StepAnswer();
+      for (int i = 0; i < numRequests; i++) {
+        in.readFully(frame);
+        TreasureWorldProtocol.getStepAnswer(ByteBuffer.wrap(frame), answer);
+        Assert.assertEquals(i % 7 + 1, answer.getX());
+        Assert.assertEquals(i % 5 + 1, answer.getY());
+      }
+      writer.join();
+    } finally {
+      socket.close();
+      server.close();
+    }
+  }
+
+  @Test
+  public void TWorldSimulationTest()   throws
+          IOException,  ContradictionException, TimeoutException, InterruptedException {
+    int[][] worlds = { {4, 3, 3, 5}, {6, 4, 4, 5}, {7, 5, 4, 7}, {8, 3, 7, 6} };
+    List<SimulationScenario> scenarios = new ArrayList<SimulationScenario>();
+    int[] expected = new int[worlds.length];
+    for (int w = 0; w < worlds.length; w++) {
+      int[] world = worlds[w];
+      TreasureFinder loader = new TreasureFinder(world[0], new GeometricInferenceEngine(world[0]), NullListener.INSTANCE);
+      loader.loadListOfSteps(world[3], "tests/steps" + (w + 1) + ".txt");
+      TreasureWorldEnv pirates = new TreasureWorldEnv(world[0], world[1], world[2]);
+      pirates.setListener(NullListener.INSTANCE);
+      pirates.loadPiratesLocations("tests/pirates" + (w + 1) + ".txt");
+      expected[w] = loadListOfTargetStates(world[0], world[3], "tests/states" + (w + 1) + ".txt")
+                        .get(world[3] - 1).countCandidates();
+      // Many agents share the same lists of steps and pirates
+      for (int copy = 0; copy < 25; copy++) {
+        scenarios.add(new SimulationScenario("world" + (w + 1), world[0], world[1], world[2], world[3],
+                                             loader.listOfSteps, pirates.listOfPirates));
+      }
+    }
+    SimulationRunner runner = new SimulationRunner(4);
+    List<SimulationResult> results = runner.run(scenarios);
+    runner.shutdown();
+    Assert.assertEquals(scenarios.size(), results.size());
+    for (int i = 0; i < results.size(); i++) {
+      SimulationResult result = results.get(i);
+      Assert.assertNull(result.getError());
+      Assert.assertSame(scenarios.get(i), result.getScenario());
+      Assert.assertEquals(expected[i / 25], result.getCandidatesRemaining());
+      Assert.assertEquals(result.getCandidatesRemaining() == 1, result.isLocated());
+    }
+    Assert.assertTrue(SimulationRunner.summarize(results).startsWith("runs: 100 errors: 0"));
+  }
+
+  @Test
+  public void TWorldRunnerClosesEnginesTest()   throws
+          IOException,  ContradictionException, TimeoutException {
+    final List<ParallelSatInferenceEngine> engines = new ArrayList<ParallelSatInferenceEngine>();
+    SimulationRunner runner = new SimulationRunner(1, new SimulationRunner.EngineFactory() {
+      @Override
+      public InferenceEngine newEngine( int dim ) {
+        ParallelSatInferenceEngine engine = new ParallelSatInferenceEngine(dim, 2);
+        engines.add(engine);
+        return engine;
+      }
+    });
+    TreasureFinder loader = new TreasureFinder(7, new GeometricInferenceEngine(7), NullListener.INSTANCE);
+    loader.loadListOfSteps(7, "tests/steps3.txt");
+    TreasureWorldEnv pirates = new TreasureWorldEnv(7, 5, 4);
+    pirates.setListener(NullListener.INSTANCE);
+    pirates.loadPiratesLocations("tests/pirates3.txt");
+    SimulationResult result = runner.runScenario(new SimulationScenario("world3", 7, 5, 4, 7,
+                                                 loader.listOfSteps, pirates.listOfPirates));
+    runner.shutdown();
+    Assert.assertNull(result.getError());
+    // The threads of the engine are released when the run ends
+    Assert.assertEquals(1, engines.size());
+    Assert.assertTrue(engines.get(0).executor.isShutdown());
+  }
+
+  @Test
+  public void TWorldExplorationTest()   throws
+          IOException,  ContradictionException, TimeoutException {
+    int[][] worlds = { {4, 3, 3}, {6, 4, 4}, {7, 5, 4}, {8, 3, 7}, {16, 15, 2} };
+    for (int[] world : worlds) {
+      int wDim = world[0];
+      TreasureWorldEnv EnvAgent = new TreasureWorldEnv(wDim, world[1], world[2]);
+      EnvAgent.setListener(NullListener.INSTANCE);
+      EnvAgent.setPiratesLocations(new ArrayList<Position>());
+      TreasureFinder TAgent = new TreasureFinder(wDim, new GeometricInferenceEngine(wDim), NullListener.INSTANCE);
+      TAgent.setEnvironment(EnvAgent);
+      TAgent.setExplorationPolicy(new ExplorationPolicy(wDim));
+      int steps = 0;
+      while (TAgent.getState().countCandidates() > 1 && steps < 4 * wDim) {
+        TAgent.runNextStep();
+        steps++;
+      }
+      Assert.assertEquals(1, TAgent.getState().countCandidates());
+      Assert.assertTrue(TAgent.getState().isCandidate(world[2], world[1]));
+    }
+  }
+
+  @Test
+  public void TWorldStopWhenLocatedTest()   throws
+          IOException,  ContradictionException, TimeoutException {
+    // The Treasure is located at step 5 of 5, and then no more steps are needed
+    TreasureFinder TAgent = TreasureWorld.runStepsSequence(4, 3, 3, 5, "tests/steps1.txt",
+            "tests/pirates1.txt", NullListener.INSTANCE, true);
+    Assert.assertTrue(TAgent.isTreasureLocated());
+    Assert.assertEquals(5, TAgent.getLocatedAtStep());
+    Assert.assertEquals(3, TAgent.getTreasurePosition().x);
+    Assert.assertEquals(3, TAgent.getTreasurePosition().y);
+    Assert.assertEquals(0, TAgent.runUntilLocated(10));
+
+    // The Treasure is not located in the 2 steps of the sequence, and no
+    // more steps are performed after them
+    TAgent = new TreasureFinder(8, new GeometricInferenceEngine(8), NullListener.INSTANCE);
+    TreasureWorldEnv shortEnv = new TreasureWorldEnv(8, 3, 7);
+    shortEnv.setListener(NullListener.INSTANCE);
+    shortEnv.setPiratesLocations(new ArrayList<Position>());
+    TAgent.setEnvironment(shortEnv);
+    TAgent.loadListOfSteps(2, "tests/steps4.txt");
+    Assert.assertEquals(2, TAgent.runUntilLocated(10));
+    Assert.assertFalse(TAgent.isTreasureLocated());
+    Assert.assertEquals(0, TAgent.runUntilLocated(10));
+
+    // Located at the first step of a long sequence: the environment is only
+    // asked about the first batch of steps
+    final TreasureWorldEnv longEnv = new TreasureWorldEnv(4, 3, 3);
+    longEnv.setListener(NullListener.INSTANCE);
+    longEnv.setPiratesLocations(new ArrayList<Position>());
+    final int[] requested = new int[1];
+    TAgent = new TreasureFinder(4, new GeometricInferenceEngine(4), NullListener.INSTANCE);
+    TAgent.setEnvironment(new TreasureWorldInterface() {
+      @Override
+      public TMessage acceptMessage( TMessage msg, TMessage ans ) {
+        return longEnv.acceptMessage(msg, ans);
+      }
+
+      @Override
+      public StepAnswer step( int x, int y, StepAnswer ans ) {
+        requested[0]++;
+        return longEnv.step(x, y, ans);
+      }
+
+      @Override
+      public StepAnswer[] replaySteps( List<Position> steps ) {
+        requested[0] += steps.size();
+        return longEnv.replaySteps(steps);
+      }
+    });
+    ArrayList<Position> longSteps = new ArrayList<Position>();
+    for (int i = 0; i < 10 * TreasureFinder.MAX_BATCH; i++) {
+      longSteps.add(new Position(3, 3));
+    }
+    TAgent.setListOfSteps(longSteps);
+    Assert.assertEquals(1, TAgent.runUntilLocated(longSteps.size()));
+    Assert.assertEquals(1, TAgent.getLocatedAtStep());
+    Assert.assertEquals(TreasureFinder.MAX_BATCH, requested[0]);
+
+    TAgent = new TreasureFinder(8, new GeometricInferenceEngine(8), NullListener.INSTANCE);
+    TreasureWorldEnv EnvAgent = new TreasureWorldEnv(8, 3, 7);
+    EnvAgent.setListener(NullListener.INSTANCE);
+    EnvAgent.setPiratesLocations(new ArrayList<Position>());
+    TAgent.setEnvironment(EnvAgent);
+    TAgent.setExplorationPolicy(new ExplorationPolicy(8));
+    int steps = TAgent.runUntilLocated(100);
+    Assert.assertTrue(steps < 100);
+    Assert.assertEquals(steps, TAgent.getLocatedAtStep());
+    Assert.assertEquals(7, TAgent.getTreasurePosition().y);
+  }
+
+  @Test
+  public void TWorldMetricsTest()   throws
+          IOException,  ContradictionException, TimeoutException {
+    MetricsRegistry metrics = new MetricsRegistry();
+    TreasureFinder TAgent = new TreasureFinder(8, new SatInferenceEngine(8), NullListener.INSTANCE);
+    TAgent.setMetrics(metrics);
+    testMakeSeqOfSteps(TAgent, 8, 3, 7, 6, "tests/steps4.txt", "tests/states4.txt", "tests/pirates4.txt");
+    MetricsRegistry.Snapshot snapshot = metrics.snapshot();
+    Assert.assertEquals(6, snapshot.getSteps());
+    Assert.assertEquals(TAgent.getState().countCandidates(), snapshot.getCandidates());
+    Assert.assertEquals(6, snapshot.getPhaseCount(AgentMetrics.Phase.MOVE));
+    Assert.assertEquals(6, snapshot.getPhaseCount(AgentMetrics.Phase.INFERENCE));
+    Assert.assertEquals(snapshot.getSatCalls(), snapshot.getSatAnswers() + snapshot.getUnsatAnswers());
+    Assert.assertTrue(snapshot.getUnsatAnswers() > 0);
+    Assert.assertTrue(snapshot.getClauses() > 0);
+    Assert.assertTrue(snapshot.getNumClauses() > 0);
+
+    // The parallel engine reports the calls of all the replicas
+    metrics = new MetricsRegistry();
+    ParallelSatInferenceEngine engine = new ParallelSatInferenceEngine(8, 3);
+    TAgent = new TreasureFinder(8, engine, NullListener.INSTANCE);
+    TAgent.setMetrics(metrics);
+    try {
+      testMakeSeqOfSteps(TAgent, 8, 3, 7, 6, "tests/steps4.txt", "tests/states4.txt", "tests/pirates4.txt");
+    } finally {
+      TAgent.close();
+    }
+    Assert.assertEquals(snapshot.getSatCalls(), metrics.snapshot().getSatCalls());
+    Assert.assertEquals(snapshot.getClauses(), metrics.snapshot().getClauses());
+
+    // A batch of steps requested at once counts as all its steps
+    metrics = new MetricsRegistry();
+    TAgent = new TreasureFinder(8, new SatInferenceEngine(8), NullListener.INSTANCE);
+    TAgent.setMetrics(metrics);
+    TAgent.setEnvironment(new TreasureWorldEnv(8, 3, 7, "tests/pirates4.txt"));
+    TAgent.loadListOfSteps(6, "tests/steps4.txt");
+    TAgent.runSteps(6);
+    Assert.assertEquals(6, metrics.snapshot().getPhaseCount(AgentMetrics.Phase.MOVE));
+    Assert.assertEquals(6, metrics.snapshot().getPhaseCount(AgentMetrics.Phase.INFERENCE));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void TWorldMetricsWithoutStreamTest() {
+    // Printed metrics need a stream, checked before the first print
+    new MetricsRegistry(10, null);
+  }
+
+  @Test
+  public void TWorldCheckpointTest()   throws
+          IOException,  ContradictionException, TimeoutException {
+    InferenceEngine[] engines = { new SatInferenceEngine(8), new SatInferenceEngine(8, true),
+                                  new GeometricInferenceEngine(8) };
+    InferenceEngine[] restoredEngines = { new SatInferenceEngine(8), new SatInferenceEngine(8, true),
+                                          new GeometricInferenceEngine(8) };
+    ArrayList<TFState> seqOfStates = loadListOfTargetStates(8, 6, "tests/states4.txt");
+    for (int e = 0; e < engines.length; e++) {
+      TreasureWorldEnv EnvAgent = new TreasureWorldEnv(8, 3, 7, "tests/pirates4.txt");
+      TreasureFinder TAgent = new TreasureFinder(8, engines[e], NullListener.INSTANCE);
+      TAgent.setEnvironment(EnvAgent);
+      TAgent.loadListOfSteps(6, "tests/steps4.txt");
+      for (int i = 0; i < 3; i++) {
+        testMakeSimpleStep(TAgent, seqOfStates.get(i));
+      }
+      ByteBuffer checkpoint = ByteBuffer.allocate(AgentCheckpoint.size(TAgent));
+      AgentCheckpoint.save(TAgent, checkpoint);
+      checkpoint.flip();
+
+      // A new agent continues from the checkpoint with the same states
+      TreasureFinder restored = new TreasureFinder(8, restoredEngines[e], NullListener.INSTANCE);
+      restored.setEnvironment(EnvAgent);
+      restored.loadListOfSteps(6, "tests/steps4.txt");
+      AgentCheckpoint.restore(restored, checkpoint);
+      Assert.assertEquals(TAgent.getState(), restored.getState());
+      for (int i = 3; i < 6; i++) {
+        testMakeSimpleStep(restored, seqOfStates.get(i));
+      }
+    }
+  }
+
+  @Test
+  public void TWorldFailedRestoreTest()   throws
+          IOException,  ContradictionException, TimeoutException {
+    ArrayList<TFState> seqOfStates = loadListOfTargetStates(8, 6, "tests/states4.txt");
+    TreasureFinder TAgent = new TreasureFinder(8, new GeometricInferenceEngine(8), NullListener.INSTANCE);
+    TAgent.setEnvironment(new TreasureWorldEnv(8, 3, 7, "tests/pirates4.txt"));
+    TAgent.loadListOfSteps(6, "tests/steps4.txt");
+    for (int i = 0; i < 3; i++) {
+      testMakeSimpleStep(TAgent, seqOfStates.get(i));
+    }
+    ByteBuffer checkpoint = ByteBuffer.allocate(AgentCheckpoint.size(TAgent));
+    AgentCheckpoint.save(TAgent, checkpoint);
+    checkpoint.flip();
+
+    // An engine that rejects the positions leaves the agent as it was
+    InferenceEngine rejecting = new SatInferenceEngine(8) {
+      @Override
+      public void restoreCandidates( BitSet possible ) throws ContradictionException {
+        throw new ContradictionException("Rejected");
+      }
+    };
+    TreasureFinder restored = new TreasureFinder(8, rejecting, NullListener.INSTANCE);
+    try {
+      AgentCheckpoint.restore(restored, checkpoint);
+      Assert.fail("The restore must fail");
+    } catch (ContradictionException ex) {
+      // Expected
+    }
+    Assert.assertEquals(new TFState(8), restored.getState());
+    Assert.assertEquals(0, restored.idNextStep);
+    Assert.assertEquals(0, restored.getLocatedAtStep());
+    Assert.assertNull(restored.getTreasurePosition());
+  }
+
+  @Test
+  public void TWorldPirateBoundsTest()   throws
+          ContradictionException, TimeoutException {
+    InferenceEngine[] engines = { new SatInferenceEngine(8), new SatInferenceEngine(8, true),
+                                  new GeometricInferenceEngine(8) };
+    TFState expected = new TFState(8);
+    expected.setImpossibleRows(1, 2);
+    expected.setImpossibleRows(6, 8);
+    for (InferenceEngine engine : engines) {
+      // The answers of the pirates add no clauses to the formula
+      MetricsRegistry metrics = new MetricsRegistry();
+      engine.setMetrics(metrics);
+      engine.startStep();
+      engine.addPirateEvidence(2, true);
+      engine.addPirateEvidence(6, false);
+      engine.addPirateEvidence(5, false);
+      Assert.assertEquals(0, metrics.snapshot().getClauses());
+
+      TFState state = new TFState(8);
+      Assert.assertEquals(24, engine.performInferenceQuestions(state));
+      Assert.assertEquals(expected, state);
+      Assert.assertEquals(0, metrics.snapshot().getClauses());
+    }
+  }
+
 }